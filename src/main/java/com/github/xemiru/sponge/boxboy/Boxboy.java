@@ -25,11 +25,14 @@ package com.github.xemiru.sponge.boxboy;
 
 import com.github.xemiru.sponge.boxboy.button.Button;
 import com.github.xemiru.sponge.boxboy.util.AnimatedMenuPattern;
+import com.github.xemiru.sponge.boxboy.util.AnimationDetail;
 import com.github.xemiru.sponge.boxboy.util.ClickContext;
 import com.github.xemiru.sponge.boxboy.util.ClickType;
+import com.github.xemiru.sponge.boxboy.util.LatencyHistogram;
 import com.github.xemiru.sponge.boxboy.util.MenuProperty;
 import com.github.xemiru.sponge.boxboy.util.OfferContext;
 import com.github.xemiru.sponge.boxboy.util.ReflectUtil;
+import org.slf4j.Logger;
 import org.spongepowered.api.Game;
 import org.spongepowered.api.GameState;
 import org.spongepowered.api.Sponge;
@@ -56,180 +59,1365 @@ import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.text.Text;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * The entrypoint class for {@link Boxboy}-related tasks.
  */
 public class Boxboy {
 
+    // Smoothed interval between two ticks above which the server is considered to be struggling, and below which it is
+    // considered to have recovered, in nanoseconds.
+    private static final long STRAINED_TICK = TimeUnit.MICROSECONDS.toNanos(52500);
+    private static final long HEALTHY_TICK = TimeUnit.MICROSECONDS.toNanos(50500);
+
+    // How many consecutive ticks either state must hold for before the animation detail is changed.
+    private static final int STRAIN_TICKS = 20;
+    private static final int RECOVERY_TICKS = 100;
+
+    // How often animations advance for menus whose viewers are all idle, in ticks.
+    private static final int IDLE_FRAME_INTERVAL = 20;
+
     private static Boxboy boxboy;
     private static Method m_sendAllContents, m_getInventory;
     private static Field f_openContainer, f_inventoryContainer;
     private static boolean reflectionReady = true;
 
-    static {
-        try {
-            Boxboy.m_sendAllContents = ReflectUtil.getDeclaredMethod("net.minecraft.entity.player.EntityPlayerMP",
-                new String[]{"sendAllContents", "func_71110_a"},
-                "net.minecraft.inventory.Container",
-                "net.minecraft.util.NonNullList");
+    // Only needed for viewer overlays; Boxboy can do without.
+    private static Method m_sendSlotContents;
+    private static boolean overlayReady = true;
+
+    // Only needed for setting cursors outside of click events; Boxboy can do without.
+    private static Method m_setItemStack, m_updateHeldItem;
+    private static Field f_inventory;
+    private static boolean cursorReady = true;
+
+    static {
+        try {
+            Boxboy.m_sendAllContents = ReflectUtil.getDeclaredMethod("net.minecraft.entity.player.EntityPlayerMP",
+                new String[]{"sendAllContents", "func_71110_a"},
+                "net.minecraft.inventory.Container",
+                "net.minecraft.util.NonNullList");
+
+            Boxboy.m_getInventory = ReflectUtil.getDeclaredMethod("net.minecraft.inventory.Container",
+                new String[]{"getInventory", "func_75138_a"});
+
+            Boxboy.f_openContainer = ReflectUtil.getDeclaredField("net.minecraft.entity.player.EntityPlayer",
+                "openContainer", "field_71070_bA");
+
+            Boxboy.f_inventoryContainer = ReflectUtil.getDeclaredField("net.minecraft.entity.player.EntityPlayer",
+                "inventoryContainer", "field_71069_bz");
+        } catch (ClassNotFoundException | NoSuchMethodException | NoSuchFieldException ignored) {
+            Boxboy.reflectionReady = false;
+        }
+
+        try {
+            Boxboy.m_sendSlotContents = ReflectUtil.getDeclaredMethod("net.minecraft.entity.player.EntityPlayerMP",
+                new String[]{"sendSlotContents", "func_71111_a"},
+                "net.minecraft.inventory.Container",
+                "int",
+                "net.minecraft.item.ItemStack");
+        } catch (ClassNotFoundException | NoSuchMethodException ignored) {
+            Boxboy.overlayReady = false;
+        }
+
+        try {
+            Boxboy.m_setItemStack = ReflectUtil.getDeclaredMethod("net.minecraft.entity.player.InventoryPlayer",
+                new String[]{"setItemStack", "func_70437_b"},
+                "net.minecraft.item.ItemStack");
+
+            Boxboy.m_updateHeldItem = ReflectUtil.getDeclaredMethod("net.minecraft.entity.player.EntityPlayerMP",
+                new String[]{"updateHeldItem", "func_71113_k"});
+
+            Boxboy.f_inventory = ReflectUtil.getDeclaredField("net.minecraft.entity.player.EntityPlayer",
+                "inventory", "field_71071_by");
+        } catch (ClassNotFoundException | NoSuchMethodException | NoSuchFieldException ignored) {
+            Boxboy.cursorReady = false;
+        }
+    }
+
+    /**
+     * Returns the singleton instance of {@link Boxboy}.
+     *
+     * @return the singleton instance of Boxboy
+     */
+    public static Boxboy get() {
+        return Boxboy.boxboy;
+    }
+
+    /**
+     * Forces a {@link Player}'s client to refresh the inventories they're viewing.
+     *
+     * @param player the Player to refresh
+     */
+    private static void updatePlayerInventory(Player player) {
+        if (!player.isOnline()) return;
+
+        try {
+            Object activeContainer = Boxboy.f_openContainer.get(player);
+            if (activeContainer == null) activeContainer = Boxboy.f_inventoryContainer.get(player);
+            Boxboy.m_sendAllContents.invoke(player, activeContainer, Boxboy.m_getInventory.invoke(activeContainer));
+        } catch (IllegalAccessException | InvocationTargetException ignored) {
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Sends the contents of a single slot of the container a {@link Player} is viewing to their client, without
+     * changing the slot's actual contents. Does nothing if overlays aren't available.</p>
+     *
+     * @param player the Player to send to
+     * @param index the index of the slot within the viewed container
+     * @param stack the contents to send
+     */
+    static void sendSlot(Player player, int index, ItemStack stack) {
+        if (!Boxboy.overlayReady || !player.isOnline()) return;
+
+        try {
+            Object activeContainer = Boxboy.f_openContainer.get(player);
+            if (activeContainer != null) Boxboy.m_sendSlotContents.invoke(player, activeContainer, index, stack);
+        } catch (IllegalAccessException | InvocationTargetException ignored) {
+        }
+    }
+
+    private Object plugin;
+    private boolean headless;
+    private Queue<Runnable> headlessTasks;
+    private Map<UUID, Player> simulatedPlayers;
+    private Executor asyncExecutor;
+    private Executor mainExecutor;
+    private Logger logger;
+    private Watchdog watchdog;
+    private WorkloadRecorder recorder;
+    private MenuAnalytics analytics;
+    private TransactionJournal journal;
+    private Set<Simulation> simulations;
+    private long lastTickTime;
+    private long lastTickAllocations;
+    private Map<String, LatencyHistogram> clickLatencies;
+    private Map<UUID, ItemStack[]> playerInvs;
+    private Map<Container, UUID> containerTrack;
+
+    private long ticks;
+    private long renderBudget;
+    private long lastRenderTime;
+    private long deferredRenders;
+    private LinkedHashMap<Menu, Long> renderQueue;
+    private Map<UUID, Menu> pendingOpens;
+    private Map<UUID, Menu> pendingSwitches;
+    private Set<Menu> pendingReleases;
+    private InventoryPool inventoryPool;
+    private Set<UUID> pendingResyncs;
+    private int viewerBudget;
+    private Map<UUID, Double> viewerTokens;
+    private long idleTimeout;
+    private Map<UUID, Long> lastInteractions;
+
+    private boolean adaptiveAnimations;
+    private AnimationDetail animationDetail;
+    private long lastTick;
+    private long tickInterval;
+    private int strain;
+
+    Boxboy(Object plugin, Game game) {
+        this(plugin);
+
+        if (game.getState().compareTo(GameState.PRE_INITIALIZATION) < 0)
+            throw new IllegalStateException("Cannot instantiate Boxboy before pre-initialization");
+
+        if (!Boxboy.reflectionReady) {
+            throw new IllegalStateException("Boxboy's reflection failed! It can't start..");
+        }
+
+        // Make sure it's actually a plugin.
+        PluginContainer container = Sponge.getPluginManager().fromInstance(plugin)
+            .orElseThrow(() -> new IllegalArgumentException("Provided object was not a registered Sponge plugin"));
+
+        this.logger = container.getLogger();
+        this.watchdog = new Watchdog(this.logger);
+        this.asyncExecutor = Sponge.getScheduler().createAsyncExecutor(plugin);
+        this.mainExecutor = Sponge.getScheduler().createSyncExecutor(plugin);
+
+        Sponge.getEventManager().registerListeners(plugin, this);
+        Task.builder()
+            .name("Boxboy Menu Task (owned by " + plugin.getClass().getSimpleName() + ".class)")
+            .intervalTicks(1)
+            .execute(this::tick)
+            .submit(this.plugin);
+    }
+
+    /**
+     * Creates a headless instance, running without a server until {@link #tick()} is called; see {@link Headless}.
+     *
+     * @param logger the logger to report to
+     */
+    Boxboy(Logger logger) {
+        this((Object) null);
+
+        this.headless = true;
+        this.headlessTasks = new ConcurrentLinkedQueue<>();
+        this.logger = logger;
+        this.watchdog = new Watchdog(this.logger);
+        this.asyncExecutor = ForkJoinPool.commonPool();
+        this.mainExecutor = this.headlessTasks::add;
+    }
+
+    private Boxboy(Object plugin) {
+        Boxboy.boxboy = this;
+
+        this.plugin = plugin;
+        this.headless = false;
+        this.headlessTasks = null;
+        this.simulatedPlayers = new HashMap<>();
+        this.playerInvs = new HashMap<>();
+        this.containerTrack = new WeakHashMap<>();
+
+        this.ticks = 0;
+        this.renderBudget = TimeUnit.MILLISECONDS.toNanos(10);
+        this.lastRenderTime = 0;
+        this.deferredRenders = 0;
+        this.renderQueue = new LinkedHashMap<>();
+        this.pendingOpens = new ConcurrentHashMap<>();
+        this.pendingSwitches = new ConcurrentHashMap<>();
+        this.pendingReleases = new HashSet<>();
+        this.inventoryPool = new InventoryPool(16, 256);
+        this.pendingResyncs = ConcurrentHashMap.newKeySet();
+        this.viewerBudget = 0;
+        this.viewerTokens = new HashMap<>();
+        this.idleTimeout = TimeUnit.SECONDS.toNanos(60);
+        this.lastInteractions = new HashMap<>();
+
+        this.adaptiveAnimations = true;
+        this.animationDetail = AnimationDetail.FULL;
+        this.lastTick = -1;
+        this.tickInterval = TimeUnit.MILLISECONDS.toNanos(50);
+        this.strain = 0;
+
+        this.recorder = null;
+        this.analytics = null;
+        this.journal = null;
+        this.simulations = new HashSet<>();
+        this.lastTickTime = 0;
+        this.lastTickAllocations = -1;
+        this.clickLatencies = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates a new {@link Menu} using the Chest / Double Chest inventory archetype.
+     *
+     * <p>There may be at most 6 rows.</p>
+     *
+     * @param rows the row count to have for the inventory
+     * @param title the title of the Menu
+     * @return the Menu instance
+     */
+    public Menu createMenu(int rows, Text title) {
+        if (rows < 1 || rows > 6)
+            throw new IllegalArgumentException("Rows parameter must be between 1 and 6 (inclusive).");
+
+        return this.createMenu(new Menu(), new InventoryPool.Key(InventoryArchetypes.CHEST, rows, title));
+    }
+
+    /**
+     * Creates a new {@link Menu} using the provided inventory archetype.
+     *
+     * @param arch the archetype to use
+     * @param title the title of the Menu
+     * @return the Menu instance
+     */
+    public Menu createMenu(InventoryArchetype arch, Text title) {
+        return this.createMenu(new Menu(), new InventoryPool.Key(arch, -1, title));
+    }
+
+    /**
+     * Creates a new {@link ExtendedMenu} using the Chest / Double Chest inventory archetype.
+     *
+     * <p>There may be at most 6 rows.</p>
+     *
+     * @param rows the row count to have for the inventory
+     * @param title the title of the ExtendedMenu
+     * @return the ExtendedMenu instance
+     */
+    public ExtendedMenu createExtendedMenu(int rows, Text title) {
+        if (rows < 1 || rows > 6)
+            throw new IllegalArgumentException("Rows parameter must be between 1 and 6 (inclusive).");
+
+        return this.createMenu(new ExtendedMenu(), new InventoryPool.Key(InventoryArchetypes.CHEST, rows, title));
+    }
+
+    /**
+     * Creates a new {@link ExtendedMenu} using the provided inventory archetype.
+     *
+     * @param arch the archetype to use
+     * @param title the title of the ExtendedMenu
+     * @return the ExtendedMenu instance
+     */
+    public ExtendedMenu createExtendedMenu(InventoryArchetype arch, Text title) {
+        return this.createMenu(new ExtendedMenu(), new InventoryPool.Key(arch, -1, title));
+    }
+
+    /**
+     * Prepares inventories for {@link Menu}s using the Chest / Double Chest inventory archetype ahead of time.
+     *
+     * <p>Menus created with the same row count and title will use the prepared inventories instead of building new
+     * ones, as long as any are left. Inventories of Menus released through {@link Menu#dispose()} are returned to the
+     * same pool. This is best used during server startup for short-lived Menus opened often, e.g. confirmation
+     * dialogs.</p>
+     *
+     * <p>Prepared inventories count towards the {@link #getInventoryPoolLimit() pool limit}, which is raised if
+     * needed; like any other, they are dropped if left unused while the pool fills up with others.</p>
+     *
+     * @param rows the row count to have for the inventories
+     * @param title the title of the Menus
+     * @param count how many inventories to prepare
+     */
+    public void prepareMenus(int rows, Text title, int count) {
+        if (rows < 1 || rows > 6)
+            throw new IllegalArgumentException("Rows parameter must be between 1 and 6 (inclusive).");
+
+        this.prepareMenus(new InventoryPool.Key(InventoryArchetypes.CHEST, rows, title), count);
+    }
+
+    /**
+     * Prepares inventories for {@link Menu}s using the provided inventory archetype ahead of time.
+     *
+     * <p>See {@link #prepareMenus(int, Text, int)}.</p>
+     *
+     * @param arch the archetype to use
+     * @param title the title of the Menus
+     * @param count how many inventories to prepare
+     */
+    public void prepareMenus(InventoryArchetype arch, Text title, int count) {
+        this.prepareMenus(new InventoryPool.Key(arch, -1, title), count);
+    }
+
+    /**
+     * Returns the maximum number of unused inventories kept for reuse per archetype, size and title.
+     *
+     * @return the maximum number of pooled inventories per kind
+     */
+    public int getInventoryPoolSize() {
+        return this.inventoryPool.getMaximumSize();
+    }
+
+    /**
+     * Sets the maximum number of unused inventories kept for reuse per archetype, size and title.
+     *
+     * @param size the maximum number of pooled inventories per kind, or 0 to disable pooling
+     * @see #prepareMenus(int, Text, int)
+     */
+    public void setInventoryPoolSize(int size) {
+        if (size < 0) throw new IllegalArgumentException("Pool size cannot be negative");
+        this.inventoryPool.setMaximumSize(size);
+    }
+
+    /**
+     * Returns the maximum number of unused inventories kept for reuse in total.
+     *
+     * @return the maximum number of pooled inventories
+     */
+    public int getInventoryPoolLimit() {
+        return this.inventoryPool.getMaximumTotal();
+    }
+
+    /**
+     * Sets the maximum number of unused inventories kept for reuse in total. Once reached, the inventories of the
+     * archetype, size and title used least recently are dropped first. Defaults to 256.
+     *
+     * @param limit the maximum number of pooled inventories, or 0 to disable pooling
+     * @see #setInventoryPoolSize(int)
+     */
+    public void setInventoryPoolLimit(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("Pool limit cannot be negative");
+        this.inventoryPool.setMaximumTotal(limit);
+    }
+
+    /**
+     * Invalidates every slot of every {@link Menu} the given {@link Button} is currently set in.
+     *
+     * <p>Only the slots holding the Button are updated in the next tick, making this a cheap way to reflect changes
+     * to a Button shared by many Menus. This method must be called on the main thread.</p>
+     *
+     * @param button the Button to invalidate
+     */
+    public void invalidateEverywhere(Button button) {
+        Objects.requireNonNull(button);
+        Menu.invalidatePlacements(button);
+    }
+
+    /**
+     * Sets the item on a {@link Player}'s cursor.
+     *
+     * <p>During a click event, {@link ClickContext#setNewCursor(ItemStack)} should be used instead. This method is
+     * meant for changing the cursor afterwards, such as once an asynchronous click action completes. It must be
+     * called on the main thread.</p>
+     *
+     * @param player the Player to set the cursor of
+     * @param item the item to set, or null to clear the cursor
+     * @throws UnsupportedOperationException if cursors cannot be set on this server
+     * @see #isCursorAvailable()
+     */
+    public void setCursor(Player player, ItemStack item) {
+        if (!Boxboy.cursorReady)
+            throw new UnsupportedOperationException("Boxboy's cursor reflection failed! Cursors can't be set..");
+        if (!player.isOnline()) return;
+
+        try {
+            Object inventory = Boxboy.f_inventory.get(player);
+            Boxboy.m_setItemStack.invoke(inventory, item == null ? ItemStack.empty() : item.copy());
+            Boxboy.m_updateHeldItem.invoke(player);
+        } catch (IllegalAccessException | InvocationTargetException ignored) {
+        }
+    }
+
+    /**
+     * Returns the {@link Watchdog} timing {@link Button} handlers and {@link Menu} updates.
+     *
+     * @return the Watchdog
+     */
+    public Watchdog getWatchdog() {
+        return this.watchdog;
+    }
+
+    /**
+     * Returns the click-to-render latencies recorded for the given type of {@link Menu}?
+     *
+     * @param type the type of Menu; its name if it has one, or the simple name of its class otherwise
+     * @return the latencies recorded for the type of Menu?
+     * @see #getClickLatencies()
+     */
+    public Optional<LatencyHistogram> getClickLatency(String type) {
+        return Optional.ofNullable(this.clickLatencies.get(type));
+    }
+
+    /**
+     * Returns the click-to-render latencies recorded for each type of {@link Menu}.
+     *
+     * <p>The latency of a click is the time from the click being received to the changes it made to the Menu being
+     * written to its inventory, including the time spent waiting for the menu task and any render backlog. Clicks not
+     * changing the Menu they were made in aren't recorded.</p>
+     *
+     * <p>Menus are grouped by name if they have one (see {@link Menu#setName(String)}), or by the simple name of their
+     * class otherwise. The returned map is live and safe to read from any thread.</p>
+     *
+     * @return the latencies recorded for each type of Menu
+     */
+    public Map<String, LatencyHistogram> getClickLatencies() {
+        return Collections.unmodifiableMap(this.clickLatencies);
+    }
+
+    /**
+     * Starts capturing all {@link Menu} activity to the given file, replacing any capture in progress.
+     *
+     * <p>Opens, closes, clicks, Button changes and invalidations are recorded in a compact binary format, to be
+     * replayed later through {@link WorkloadReplay}. Players aren't identified in captures. Capturing stops by itself
+     * if the file can't be written to.</p>
+     *
+     * @param file the file to capture to
+     * @throws IOException if the file couldn't be opened
+     */
+    public void startCapture(Path file) throws IOException {
+        this.stopCapture();
+        this.recorder = new WorkloadRecorder(Files.newOutputStream(file));
+    }
+
+    /**
+     * Stops capturing {@link Menu} activity, if a capture is in progress.
+     */
+    public void stopCapture() {
+        if (this.recorder == null) return;
+
+        try {
+            this.recorder.close();
+        } catch (IOException e) {
+            this.logger.error("Could not finish writing workload capture", e);
+        }
+
+        this.recorder = null;
+    }
+
+    /**
+     * @return whether or not {@link Menu} activity is currently being captured
+     */
+    public boolean isCapturing() {
+        return this.recorder != null;
+    }
+
+    /**
+     * Starts streaming {@link Menu} analytics events to files in the given directory, replacing any stream in
+     * progress.
+     *
+     * <p>Events are published without blocking the main thread and written in batches by a background thread; see
+     * {@link MenuAnalytics} for the file format. Analytics stop by themselves if the files can't be written to.</p>
+     *
+     * @param directory the directory to write files to, created if it doesn't exist
+     * @return the MenuAnalytics receiving events
+     * @throws IOException if the directory or the first file couldn't be created
+     */
+    public MenuAnalytics startAnalytics(Path directory) throws IOException {
+        this.stopAnalytics();
+        this.analytics = new MenuAnalytics(directory, 1 << 16);
+        return this.analytics;
+    }
+
+    /**
+     * Stops streaming {@link Menu} analytics events, once all events published so far have been written.
+     */
+    public void stopAnalytics() {
+        if (this.analytics == null) return;
+
+        this.analytics.stop();
+        this.analytics = null;
+    }
+
+    /**
+     * @return the MenuAnalytics receiving events, if analytics are being streamed?
+     */
+    public Optional<MenuAnalytics> getAnalytics() {
+        return Optional.ofNullable(this.analytics);
+    }
+
+    /**
+     * Opens the {@link TransactionJournal} in the given directory for appending, creating it if it doesn't exist and
+     * closing any journal opened before.
+     *
+     * <p>The journal is closed when the server stops.</p>
+     *
+     * @param directory the directory of the journal
+     * @return the TransactionJournal
+     * @throws IOException if the journal couldn't be opened or recovered
+     * @see ClickContext#journal(int, long, long)
+     */
+    public TransactionJournal openJournal(Path directory) throws IOException {
+        this.closeJournal();
+        this.journal = new TransactionJournal(directory, 1 << 20, this.mainExecutor);
+        return this.journal;
+    }
+
+    /**
+     * Commits all records appended to the open {@link TransactionJournal} and closes it, if a journal is open.
+     */
+    public void closeJournal() {
+        if (this.journal == null) return;
+
+        try {
+            this.journal.close();
+        } catch (IOException e) {
+            this.logger.error("Could not commit transaction journal", e);
+        }
+
+        this.journal = null;
+    }
+
+    /**
+     * @return the TransactionJournal records are appended to, if one is open?
+     */
+    public Optional<TransactionJournal> getJournal() {
+        return Optional.ofNullable(this.journal);
+    }
+
+    /**
+     * Returns whether or not the running JVM supports the Java Flight Recorder events emitted by {@link Boxboy}.
+     *
+     * <p>If supported, Boxboy emits events under the "Boxboy" category whenever a {@link Menu} is opened, closed,
+     * updated or clicked, and whenever animations advance. These events cost next to nothing while they aren't being
+     * recorded.</p>
+     *
+     * @return if Flight Recorder events are supported
+     */
+    public boolean isFlightRecorderAvailable() {
+        return FlightEvent.isAvailable();
+    }
+
+    /**
+     * Returns whether or not viewer overlays can be shown on this server.
+     *
+     * <p>Overlays are sent to each viewer's client directly, through reflection. If that reflection failed, Boxboy
+     * still works, but {@link Menu#setOverlay(Player, int, Button)} can't be used.</p>
+     *
+     * @return if overlays are supported
+     */
+    public boolean isOverlayAvailable() {
+        return Boxboy.overlayReady;
+    }
+
+    /**
+     * Returns whether or not cursors can be set outside of click events on this server.
+     *
+     * <p>Cursors are set through reflection. If that reflection failed, Boxboy still works, but
+     * {@link #setCursor(Player, ItemStack)} can't be used.</p>
+     *
+     * @return if cursors can be set
+     */
+    public boolean isCursorAvailable() {
+        return Boxboy.cursorReady;
+    }
+
+    /**
+     * Returns the {@link Executor} asynchronous click actions are run on.
+     *
+     * @return the asynchronous Executor
+     * @see ClickContext#runAsync(Supplier, ItemStack, Consumer, Consumer)
+     */
+    public Executor getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    /**
+     * Sets the {@link Executor} asynchronous click actions are run on.
+     *
+     * <p>Defaults to Sponge's asynchronous scheduler. Actions blocking on a limited resource, such as a database
+     * connection pool, may be better off on an Executor sized accordingly.</p>
+     *
+     * @param executor the asynchronous Executor
+     */
+    public void setAsyncExecutor(Executor executor) {
+        this.asyncExecutor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Returns an {@link Executor} running tasks on the main thread.
+     *
+     * @return the main thread Executor
+     */
+    public Executor getMainExecutor() {
+        return this.mainExecutor;
+    }
+
+    /**
+     * Returns the time, in milliseconds, that {@link Menu}s are allowed to spend updating their inventories per tick.
+     *
+     * @return the per-tick render budget in milliseconds, or 0 if unlimited
+     * @see #setRenderBudget(long)
+     */
+    public long getRenderBudget() {
+        return TimeUnit.NANOSECONDS.toMillis(this.renderBudget);
+    }
+
+    /**
+     * Sets the time, in milliseconds, that {@link Menu}s are allowed to spend updating their inventories per tick.
+     *
+     * <p>Invalidated Menus are updated in the order they were invalidated. Once the budget is spent, the remaining
+     * Menus are deferred to the next tick, where they are updated before any Menus invalidated after them. At least one
+     * Menu is always updated per tick regardless of the budget.</p>
+     *
+     * @param millis the per-tick render budget in milliseconds, or 0 for no limit
+     */
+    public void setRenderBudget(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Render budget cannot be negative");
+        this.renderBudget = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Returns the number of invalidated {@link Menu}s currently waiting to be updated, having not fit into the render
+     * budget of the previous tick.
+     *
+     * @return the number of Menus waiting to be updated
+     */
+    public int getRenderBacklog() {
+        return this.renderQueue.size();
+    }
+
+    /**
+     * Returns how many ticks the longest-waiting {@link Menu} in the render backlog has been waiting for.
+     *
+     * @return the age of the render backlog in ticks, or 0 if there is no backlog
+     */
+    public long getRenderLag() {
+        Iterator<Long> it = this.renderQueue.values().iterator();
+        return it.hasNext() ? this.ticks - it.next() : 0;
+    }
+
+    /**
+     * Returns the total number of times a {@link Menu} update was deferred to a later tick due to the render budget.
+     *
+     * @return the total number of deferred Menu updates
+     */
+    public long getDeferredRenderCount() {
+        return this.deferredRenders;
+    }
+
+    /**
+     * Returns the time spent updating {@link Menu} inventories during the last tick, in nanoseconds.
+     *
+     * @return the last tick's render time in nanoseconds
+     */
+    public long getLastRenderTime() {
+        return this.lastRenderTime;
+    }
+
+    /**
+     * Returns how many slot updates each viewer of a {@link Menu} may be sent per second before animation frames start
+     * being skipped for them.
+     *
+     * @return the per-viewer update budget, or 0 if unlimited
+     * @see #setViewerBudget(int)
+     */
+    public int getViewerBudget() {
+        return this.viewerBudget;
+    }
+
+    /**
+     * Sets how many slot updates each viewer of a {@link Menu} may be sent per second before animation frames start
+     * being skipped for them.
+     *
+     * <p>Every slot update sent to a viewer is counted against their budget, which refills continuously and can save
+     * up to one second's worth of updates. While a viewer is over budget, the animations they're shown stop advancing
+     * and resume at their then-current frame once the budget has refilled; intermediate frames are simply never sent.
+     * Changes made to Menus through other means are always sent, but still counted.</p>
+     *
+     * <p>Viewers of the same Menu are sent the same shared slots; a Menu's animations thus advance at the pace of its
+     * most limited viewer. Overlays set through {@link Menu#setOverlay(Player, int, Button)} are budgeted for each
+     * viewer individually.</p>
+     *
+     * @param updatesPerSecond the per-viewer update budget, or 0 for no limit
+     */
+    public void setViewerBudget(int updatesPerSecond) {
+        if (updatesPerSecond < 0) throw new IllegalArgumentException("Viewer budget cannot be negative");
+        this.viewerBudget = updatesPerSecond;
+        this.viewerTokens.clear();
+    }
+
+    /**
+     * Returns the time, in seconds, after which a viewer who hasn't interacted with the {@link Menu} they're viewing is
+     * considered idle.
+     *
+     * @return the idle timeout in seconds, or 0 if viewers are never considered idle
+     * @see #setIdleTimeout(long)
+     */
+    public long getIdleTimeout() {
+        return TimeUnit.NANOSECONDS.toSeconds(this.idleTimeout);
+    }
+
+    /**
+     * Sets the time, in seconds, after which a viewer who hasn't interacted with the {@link Menu} they're viewing is
+     * considered idle.
+     *
+     * <p>Opening or clicking a Menu counts as interacting with it. Once all viewers of a Menu are idle, its animations
+     * only advance once per second and decorative animations are paused, until one of them interacts with it again.
+     * Other changes to the Menu are still shown right away. Defaults to 60 seconds.</p>
+     *
+     * @param seconds the idle timeout in seconds, or 0 to never consider viewers idle
+     */
+    public void setIdleTimeout(long seconds) {
+        if (seconds < 0) throw new IllegalArgumentException("Idle timeout cannot be negative");
+        this.idleTimeout = TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    /**
+     * Returns whether or not the given {@link Player} is considered idle.
+     *
+     * @param player the Player to query
+     * @return if the Player is idle
+     * @see #setIdleTimeout(long)
+     */
+    public boolean isIdle(Player player) {
+        return this.isIdle(player.getUniqueId());
+    }
+
+    /**
+     * Returns whether or not animations are displayed at a reduced level of detail while the server is under heavy
+     * load.
+     *
+     * @return if adaptive animations are enabled
+     * @see #setAdaptiveAnimations(boolean)
+     */
+    public boolean isAdaptiveAnimations() {
+        return this.adaptiveAnimations;
+    }
+
+    /**
+     * Sets whether or not animations are displayed at a reduced level of detail while the server is under heavy load.
+     *
+     * <p>If enabled, {@link Boxboy} watches the time taken by each server tick and progressively lowers the
+     * {@link AnimationDetail} of all animations while ticks take longer than they should, restoring it once the server
+     * has recovered. Enabled by default.</p>
+     *
+     * @param adaptive if adaptive animations should be enabled
+     */
+    public void setAdaptiveAnimations(boolean adaptive) {
+        this.adaptiveAnimations = adaptive;
+        if (!adaptive) {
+            this.animationDetail = AnimationDetail.FULL;
+            this.strain = 0;
+        }
+    }
+
+    /**
+     * Returns the {@link AnimationDetail} animations are currently displayed at.
+     *
+     * @return the current AnimationDetail
+     */
+    public AnimationDetail getAnimationDetail() {
+        return this.animationDetail;
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Queues the given {@link Menu} to be opened for the given {@link Player} on the next tick, replacing any other
+     * Menu queued for them.</p>
+     *
+     * @param player the Player to open the Menu for
+     * @param menu the Menu to open
+     */
+    void queueOpen(Player player, Menu menu) {
+        this.pendingSwitches.remove(player.getUniqueId());
+        this.pendingOpens.put(player.getUniqueId(), menu);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Queues the given {@link Player} to be switched over to the given {@link Menu} from the one they're currently
+     * viewing on the next tick, replacing any other Menu queued for them.</p>
+     *
+     * <p>Unlike {@link #queueOpen(Player, Menu)}, a Player switching between two {@link ExtendedMenu}s keeps their
+     * inventory stored away instead of having it restored and stored again.</p>
+     *
+     * @param player the Player to switch
+     * @param menu the Menu to switch to
+     */
+    void queueSwitch(Player player, Menu menu) {
+        this.pendingOpens.put(player.getUniqueId(), menu);
+        this.pendingSwitches.put(player.getUniqueId(), menu);
+    }
 
-            Boxboy.m_getInventory = ReflectUtil.getDeclaredMethod("net.minecraft.inventory.Container",
-                new String[]{"getInventory", "func_75138_a"});
+    /**
+     * Internal method.
+     *
+     * <p>Queues the given {@link Player}'s client to have the inventories they're viewing refreshed on the next
+     * tick.</p>
+     *
+     * @param player the Player to refresh
+     */
+    private void queueResync(Player player) {
+        this.pendingResyncs.add(player.getUniqueId());
+    }
 
-            Boxboy.f_openContainer = ReflectUtil.getDeclaredField("net.minecraft.entity.player.EntityPlayer",
-                "openContainer", "field_71070_bA");
+    /**
+     * Internal method.
+     *
+     * <p>Releases disposed {@link Menu}s and performs all queued inventory refreshes, then opens all queued
+     * Menus.</p>
+     */
+    private void processPending() {
+        this.pendingReleases.forEach(menu -> {
+            if (menu.getViewers().isEmpty()) this.releaseMenu(menu);
+        });
+        this.pendingReleases.clear();
+
+        // Resyncs are processed first; those queued by the opens below are meant for the next tick.
+        Iterator<UUID> resyncs = this.pendingResyncs.iterator();
+        while (resyncs.hasNext()) {
+            UUID uid = resyncs.next();
+            resyncs.remove();
+            this.getPlayer(uid).ifPresent(player -> {
+                Boxboy.updatePlayerInventory(player);
+
+                // Full refreshes send over any overlays; put them back.
+                this.fromPlayer(player).ifPresent(menu -> menu.resendOverlays(player));
+            });
+        }
 
-            Boxboy.f_inventoryContainer = ReflectUtil.getDeclaredField("net.minecraft.entity.player.EntityPlayer",
-                "inventoryContainer", "field_71069_bz");
-        } catch (ClassNotFoundException | NoSuchMethodException | NoSuchFieldException ignored) {
-            Boxboy.reflectionReady = false;
+        for (Map.Entry<UUID, Menu> open : this.pendingOpens.entrySet()) {
+            // Another Menu may have been queued concurrently; leave it for the next tick if so.
+            UUID uid = open.getKey();
+            Menu menu = open.getValue();
+            if (!this.pendingOpens.remove(uid, menu)) continue;
+
+            // A Menu disposed of after being queued may have handed its inventory back to the pool already.
+            if (menu.isDisposed()) {
+                boolean switching = this.pendingSwitches.remove(uid) != null;
+                this.getPlayer(uid).filter(Player::isOnline).ifPresent(player -> {
+                    if (switching && !(this.fromPlayer(player).orElse(null) instanceof ExtendedMenu)
+                        && this.hasStoredInventory(player)) {
+                        this.restorePlayer(player);
+                        this.queueResync(player);
+                    }
+                });
+
+                continue;
+            }
+
+            // Menus without viewers aren't kept up to date; make sure the first thing shown is current. Rendered here,
+            // the Menu gives up its place in the render queue, and any viewers it already has pay for the update.
+            if (menu.checkInvalidated(true, true)) {
+                this.renderQueue.remove(menu);
+                int written = menu.render();
+                if (written > 0) menu.getViewers().forEach(viewer -> this.chargeViewer(viewer, written));
+            }
+
+            this.getPlayer(uid).filter(Player::isOnline).ifPresent(player -> {
+                player.openInventory(menu.getInventory());
+
+                // A switch that didn't go through may have left the player's inventory stored away.
+                if (this.pendingSwitches.remove(uid) != null && !menu.isViewingMenu(player)
+                    && this.hasStoredInventory(player)) {
+                    this.restorePlayer(player);
+                    this.queueResync(player);
+                }
+            });
         }
     }
 
     /**
-     * Returns the singleton instance of {@link Boxboy}.
+     * Internal method.
      *
-     * @return the singleton instance of Boxboy
+     * <p>Returns whether or not this instance runs without a server; see {@link Headless}.</p>
+     *
+     * @return if this instance is headless
      */
-    public static Boxboy get() {
-        return Boxboy.boxboy;
+    boolean isHeadless() {
+        return this.headless;
     }
 
     /**
-     * Forces a {@link Player}'s client to refresh the inventories they're viewing.
+     * Internal method.
      *
-     * @param player the Player to refresh
+     * <p>Returns the {@link Player} with the given {@link UUID}, if they're on the server or simulated.</p>
+     *
+     * @param uid the UUID of the Player
+     * @return the Player?
      */
-    private static void updatePlayerInventory(Player player) {
-        if (!player.isOnline()) return;
+    Optional<Player> getPlayer(UUID uid) {
+        Player simulated = this.simulatedPlayers.get(uid);
+        if (simulated != null || this.headless) return Optional.ofNullable(simulated);
+        return Sponge.getServer().getPlayer(uid);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Makes a simulated {@link Player} known, such that Menus they view write to their inventory like they would
+     * for a Player on the server. Simulated Players are forgotten along with everything else tracked about them as a
+     * viewer.</p>
+     *
+     * @param player the simulated Player
+     * @see #forgetViewer(UUID)
+     */
+    void addSimulatedPlayer(Player player) {
+        this.simulatedPlayers.put(player.getUniqueId(), player);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns whether or not the {@link Player} with the given {@link UUID} may currently be sent animation
+     * frames.</p>
+     *
+     * @param uid the UUID of the Player
+     * @return if the Player is within their update budget
+     */
+    boolean isWithinBudget(UUID uid) {
+        if (this.viewerBudget <= 0) return true;
+
+        Double tokens = this.viewerTokens.get(uid);
+        return tokens == null || tokens > 0;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns whether or not all viewers of the given {@link Menu} may currently be sent animation frames.</p>
+     *
+     * @param menu the Menu
+     * @return if all viewers of the Menu are within their update budget
+     */
+    private boolean isWithinBudget(Menu menu) {
+        if (this.viewerBudget <= 0) return true;
+        for (UUID uid : menu.getViewers()) if (!this.isWithinBudget(uid)) return false;
+        return true;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Counts slot updates sent to the {@link Player} with the given {@link UUID} against their update budget.</p>
+     *
+     * @param uid the UUID of the Player
+     * @param updates the number of slot updates sent
+     */
+    void chargeViewer(UUID uid, int updates) {
+        if (this.viewerBudget <= 0) return;
+        this.viewerTokens.compute(uid, (key, tokens) -> (tokens == null ? this.viewerBudget : tokens) - updates);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Passes a click on to the {@link Button} seen by the clicker in the clicked slot, offering it the item on the
+     * clicker's cursor first.</p>
+     *
+     * @param context the context of the click
+     * @param received the time the click was received at, as given by {@link System#nanoTime()}
+     * @return if the Button accepted the offered item
+     */
+    boolean dispatchClick(ClickContext context, long received) {
+        Menu menu = context.getSourceMenu();
+        Player clicker = context.getClicker();
+        int slot = context.getSlot();
+        Optional<Button> button = menu.getButton(clicker, slot);
+        long changes = menu.getChangeCount();
+        if (this.recorder != null) this.recorder.click(menu, clicker.getUniqueId(), context.getType(), slot);
+        if (this.analytics != null) this.analytics.click(menu, clicker, slot, button.orElse(null), context.getType());
+        if (!button.isPresent()) return false;
+
+        boolean accepted;
+        OfferContext oContext = new OfferContext(menu, clicker, context.getCursor().orElse(null), slot);
+        long start = this.watchdog.begin(false);
+        try {
+            accepted = button.get().offer(oContext);
+        } finally {
+            this.watchdog.endOffer(menu, slot, button.get(), start);
+        }
 
+        Object event = FlightEvent.CLICK.begin();
+        start = this.watchdog.begin(false);
         try {
-            Object activeContainer = Boxboy.f_openContainer.get(player);
-            if (activeContainer == null) activeContainer = Boxboy.f_inventoryContainer.get(player);
-            Boxboy.m_sendAllContents.invoke(player, activeContainer, Boxboy.m_getInventory.invoke(activeContainer));
-        } catch (IllegalAccessException | InvocationTargetException ignored) {
+            button.get().onClick(context);
+        } finally {
+            this.watchdog.endClick(menu, slot, button.get(), start);
+            if (event != null) FlightEvent.CLICK.commit(event, Watchdog.describe(menu), clicker.getName(), slot,
+                button.get().getClass().getName(), context.getType().name());
         }
+
+        // The click goes through once accepted, changing the slot's contents behind the renderer's back.
+        if (accepted) menu.forgetRendered(slot);
+        menu.stampClick(received, changes, slot);
+        return accepted;
     }
 
-    private Object plugin;
-    private Map<UUID, ItemStack[]> playerInvs;
-    private Map<Container, UUID> containerTrack;
+    /**
+     * Internal method.
+     *
+     * <p>Returns the recorder capturing {@link Menu} activity?</p>
+     *
+     * @return the recorder, or null if nothing is being captured
+     */
+    WorkloadRecorder getRecorder() {
+        return this.recorder;
+    }
 
-    Boxboy(Object plugin, Game game) {
-        Boxboy.boxboy = this;
+    /**
+     * Internal method.
+     *
+     * <p>Runs the given {@link Simulation} from the next tick on.</p>
+     *
+     * @param simulation the Simulation
+     */
+    void startSimulation(Simulation simulation) {
+        this.simulations.add(simulation);
+    }
 
-        this.plugin = plugin;
-        this.playerInvs = new HashMap<>();
-        this.containerTrack = new WeakHashMap<>();
+    /**
+     * Internal method.
+     *
+     * <p>Returns the time taken by the menu task during the last tick, in nanoseconds, not counting the
+     * {@link Simulation}s run before it.</p>
+     *
+     * @return the last tick's menu task time in nanoseconds
+     */
+    long getLastTickTime() {
+        return this.lastTickTime;
+    }
 
-        if (game.getState().compareTo(GameState.PRE_INITIALIZATION) < 0)
-            throw new IllegalStateException("Cannot instantiate Boxboy before pre-initialization");
+    /**
+     * Internal method.
+     *
+     * <p>Returns the memory allocated by the menu task during the last tick, if it was measured. Allocations are only
+     * measured while a {@link Simulation} is running, and only on JVMs able to measure them.</p>
+     *
+     * @return the last tick's allocations in bytes, or -1 if they weren't measured
+     */
+    long getLastTickAllocations() {
+        return this.lastTickAllocations;
+    }
 
-        if (!Boxboy.reflectionReady) {
-            throw new IllegalStateException("Boxboy's reflection failed! It can't start..");
-        }
+    /**
+     * Internal method.
+     *
+     * <p>Returns the memory allocated by the current thread so far.</p>
+     *
+     * @return the allocated memory in bytes, or -1 if this JVM can't measure it
+     */
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
 
-        // Make sure it's actually a plugin.
-        // Container variable isn't used.
-        @SuppressWarnings("unused") PluginContainer container = Sponge.getPluginManager().fromInstance(plugin)
-            .orElseThrow(() -> new IllegalArgumentException("Provided object was not a registered Sponge plugin"));
+        try {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
 
-        Sponge.getEventManager().registerListeners(plugin, this);
-        Task.builder()
-            .name("Boxboy Menu Task (owned by " + plugin.getClass().getSimpleName() + ".class)")
-            .intervalTicks(1)
-            .execute(() -> Menu.menus.forEach(menu -> {
-                if (!menu.getViewers().isEmpty() && menu.isInvalidated()) menu.updateInventory();
-                AnimatedMenuPattern.refreshAnimations();
-            })).submit(this.plugin);
+    /**
+     * Internal method.
+     *
+     * <p>Records the click-to-render latency of a click made in the given {@link Menu}.</p>
+     *
+     * @param menu the Menu clicked
+     * @param nanos the latency in nanoseconds
+     */
+    void recordClickLatency(Menu menu, long nanos) {
+        String type = menu.getName().orElse(menu.getClass().getSimpleName());
+        this.clickLatencies.computeIfAbsent(type, key -> new LatencyHistogram()).record(nanos);
     }
 
     /**
-     * Creates a new {@link Menu} using the Chest / Double Chest inventory archetype.
+     * Internal method.
      *
-     * <p>There may be at most 6 rows.</p>
+     * <p>Records an interaction of the {@link Player} with the given {@link UUID} with the {@link Menu} they're
+     * viewing.</p>
      *
-     * @param rows the row count to have for the inventory
-     * @param title the title of the Menu
-     * @return the Menu instance
+     * @param uid the UUID of the Player
      */
-    public Menu createMenu(int rows, Text title) {
-        if (rows < 1 || rows > 6)
-            throw new IllegalArgumentException("Rows parameter must be between 1 and 6 (inclusive).");
+    void touchViewer(UUID uid) {
+        this.lastInteractions.put(uid, System.nanoTime());
+    }
 
-        return this.createMenu(Inventory.builder()
-            .of(InventoryArchetypes.CHEST)
-            .property(InventoryTitle.of(title))
-            .property(InventoryDimension.of(9, rows)));
+    /**
+     * Internal method.
+     *
+     * <p>Drops everything tracked about the {@link Player} with the given {@link UUID} as a viewer of menus.</p>
+     *
+     * @param uid the UUID of the Player
+     */
+    void forgetViewer(UUID uid) {
+        this.simulatedPlayers.remove(uid);
+        SlotLayout.forget(uid);
+        this.viewerTokens.remove(uid);
+        this.lastInteractions.remove(uid);
     }
 
     /**
-     * Creates a new {@link Menu} using the provided inventory archetype.
+     * Internal method.
      *
-     * @param arch the archetype to use
-     * @param title the title of the Menu
-     * @return the Menu instance
+     * <p>Returns whether or not the {@link Player} with the given {@link UUID} is considered idle.</p>
+     *
+     * @param uid the UUID of the Player
+     * @return if the Player is idle
      */
-    public Menu createMenu(InventoryArchetype arch, Text title) {
-        return this.createMenu(Inventory.builder()
-            .property(InventoryTitle.of(title))
-            .of(arch));
+    private boolean isIdle(UUID uid) {
+        if (this.idleTimeout <= 0) return false;
+
+        Long last = this.lastInteractions.get(uid);
+        return last != null && System.nanoTime() - last >= this.idleTimeout;
     }
 
     /**
-     * Creates a new {@link ExtendedMenu} using the Chest / Double Chest inventory archetype.
+     * Internal method.
      *
-     * <p>There may be at most 6 rows.</p>
+     * <p>Returns whether or not all viewers of the given {@link Menu} are considered idle.</p>
      *
-     * @param rows the row count to have for the inventory
-     * @param title the title of the ExtendedMenu
-     * @return the ExtendedMenu instance
+     * @param menu the Menu
+     * @return if all viewers of the Menu are idle
      */
-    public ExtendedMenu createExtendedMenu(int rows, Text title) {
-        if (rows < 1 || rows > 6)
-            throw new IllegalArgumentException("Rows parameter must be between 1 and 6 (inclusive).");
+    private boolean isIdle(Menu menu) {
+        if (this.idleTimeout <= 0) return false;
+        for (UUID uid : menu.getViewers()) if (!this.isIdle(uid)) return false;
+        return true;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Refills the update budget of all viewers by one tick's worth of updates.</p>
+     */
+    private void refillBudgets() {
+        if (this.viewerBudget <= 0) return;
 
-        return this.createPlayerMenu(Inventory.builder()
-            .of(InventoryArchetypes.CHEST)
-            .property(InventoryTitle.of(title))
-            .property(InventoryDimension.of(9, rows)));
+        double refill = this.viewerBudget / 20D;
+        this.viewerTokens.replaceAll((uid, tokens) -> tokens + refill);
+        this.viewerTokens.values().removeIf(tokens -> tokens >= this.viewerBudget);
     }
 
     /**
-     * Creates a new {@link ExtendedMenu} using the provided inventory archetype.
+     * Internal method.
      *
-     * @param arch the archetype to use
-     * @param title the title of the ExtendedMenu
-     * @return the ExtendedMenu instance
+     * <p>Measures the interval since the last tick and adjusts the current {@link AnimationDetail} accordingly.</p>
      */
-    public ExtendedMenu createExtendedMenu(InventoryArchetype arch, Text title) {
-        return this.createPlayerMenu(Inventory.builder()
-            .property(InventoryTitle.of(title))
-            .of(arch));
+    private void measureTick() {
+        long now = System.nanoTime();
+        if (this.lastTick >= 0) this.tickInterval += ((now - this.lastTick) - this.tickInterval) / 10;
+        this.lastTick = now;
+
+        if (!this.adaptiveAnimations) return;
+        if (this.tickInterval > Boxboy.STRAINED_TICK) this.strain = Math.max(this.strain, 0) + 1;
+        else if (this.tickInterval < Boxboy.HEALTHY_TICK) this.strain = Math.min(this.strain, 0) - 1;
+        else this.strain = 0;
+
+        if (this.strain >= Boxboy.STRAIN_TICKS) {
+            this.animationDetail = this.animationDetail.lower();
+            this.strain = 0;
+        } else if (this.strain <= -Boxboy.RECOVERY_TICKS) {
+            this.animationDetail = this.animationDetail.higher();
+            this.strain = 0;
+        }
     }
 
-    // region Internal methods
+    /**
+     * Internal method.
+     *
+     * <p>Runs once per tick on the main thread. Applies mutations queued to all {@link Menu}s and changes made to
+     * {@link MenuValue}s before updating the inventories of those which have been invalidated, within the limits of the
+     * render budget.</p>
+     *
+     * <p>Headless instances are ticked by whoever runs them, and run their main thread tasks first.</p>
+     */
+    void tick() {
+        if (this.headless) {
+            Runnable task;
+            while ((task = this.headlessTasks.poll()) != null) task.run();
+        }
+
+        // Simulated clicks stand in for clicks received between ticks; they aren't part of the menu task's cost.
+        this.simulations.removeIf(simulation -> !simulation.step());
+
+        long start = System.nanoTime();
+        long allocated = this.simulations.isEmpty() ? -1 : Boxboy.allocatedBytes();
+
+        this.runTick();
+
+        this.lastTickTime = System.nanoTime() - start;
+        this.lastTickAllocations = allocated < 0 ? -1 : Boxboy.allocatedBytes() - allocated;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Performs the work of {@link #tick()}.</p>
+     */
+    private void runTick() {
+        this.ticks++;
+        FlightEvent.refreshAll();
+        this.measureTick();
+        this.refillBudgets();
+        this.processPending();
+        if (this.recorder != null) {
+            this.recorder.tick();
+            if (this.recorder.getError() != null) {
+                this.logger.error("Could not write workload capture; capture stopped", this.recorder.getError());
+                this.stopCapture();
+            }
+        }
+
+        if (this.analytics != null && this.analytics.getError().isPresent()) {
+            this.logger.error("Could not write menu analytics; analytics stopped", this.analytics.getError().get());
+            this.stopAnalytics();
+        }
+
+        if (this.journal != null && this.journal.getError().isPresent()) {
+            TransactionJournal journal = this.journal;
+            this.journal = null;
+            this.logger.error("Could not commit transaction journal; journal closed", journal.getError().get());
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+                // reported above
+            }
+        }
+
+        Menu.menus.forEach(menu -> menu.applyMutations(this.logger));
+        MenuValue.flushChanges();
+
+        boolean animations = this.ticks % this.animationDetail.getFrameInterval() == 0;
+        boolean decorative = animations && !this.animationDetail.isDecorativePaused();
+        boolean idleAnimations = this.ticks % Boxboy.IDLE_FRAME_INTERVAL == 0;
+
+        Object animateEvent = animations ? FlightEvent.ANIMATE.begin() : null;
+
+        // Menus only watched by idle viewers advance slowly and without decorative animations.
+        if (animations) AnimatedMenuPattern.refreshAnimations(decorative,
+            menu -> !this.isIdle(menu) && this.isWithinBudget(menu));
+        if (idleAnimations) AnimatedMenuPattern.refreshAnimations(false,
+            menu -> this.isIdle(menu) && this.isWithinBudget(menu));
+        Menu.menus.forEach(menu -> menu.updateOverlays(uid ->
+            (this.isIdle(uid) ? idleAnimations : animations) && this.isWithinBudget(uid)));
+
+        // Menus already waiting keep their place in line; newly invalidated ones queue up behind them.
+        Menu.menus.forEach(menu -> {
+            if (menu.getViewers().isEmpty() || this.renderQueue.containsKey(menu)) return;
+
+            // Menus with viewers over budget skip frames, but still pick up any other changes.
+            boolean idle = this.isIdle(menu);
+            boolean frames = (idle ? idleAnimations : animations) && this.isWithinBudget(menu);
+            if (menu.checkInvalidated(frames, frames && !idle && decorative)) this.renderQueue.put(menu, this.ticks);
+        });
+
+        if (animateEvent != null)
+            FlightEvent.ANIMATE.commit(animateEvent, this.animationDetail.name(), decorative, this.renderQueue.size());
+
+        long start = System.nanoTime();
+        boolean first = true;
+        Iterator<Menu> it = this.renderQueue.keySet().iterator();
+        while (it.hasNext()) {
+            if (!first && this.renderBudget > 0 && System.nanoTime() - start >= this.renderBudget) break;
+
+            Menu menu = it.next();
+            it.remove();
+            if (!menu.getViewers().isEmpty()) {
+                int written = menu.render();
+                if (written > 0) menu.getViewers().forEach(uid -> this.chargeViewer(uid, written));
+            }
+
+            first = false;
+        }
+
+        this.deferredRenders += this.renderQueue.size();
+        this.lastRenderTime = System.nanoTime() - start;
+    }
 
     /**
      * Internal method.
      *
-     * <p>Creates a new {@link Menu} with the inventory set by the properties of the provided builder.</p>
+     * <p>Initializes the provided {@link Menu} with a pooled inventory matching the provided key, or a new one if there
+     * are none.</p>
      *
-     * @param builder the builder to create from
+     * @param menu the Menu to initialize
+     * @param key the key describing the inventory to use
+     * @param <T> the type of the Menu
      * @return the Menu instance
      */
-    private Menu createMenu(Inventory.Builder builder) {
-        Menu menu = new Menu();
-        menu.initialize(builder.property(MenuProperty.of(menu)).build(plugin));
+    private <T extends Menu> T createMenu(T menu, InventoryPool.Key key) {
+        InventoryPool.Entry entry = this.inventoryPool.lease(key);
+        if (entry == null) entry = this.buildInventory(key);
+
+        entry.setMenu(menu);
+        menu.initialize(entry.getInventory(), entry.getLayout());
+        menu.poolKey = key;
+        menu.poolEntry = entry;
 
         return menu;
     }
@@ -237,16 +1425,65 @@ public class Boxboy {
     /**
      * Internal method.
      *
-     * <p>Creates a new {@link ExtendedMenu} with the inventory set by the properties of the provided builder.</p>
+     * <p>Builds a new inventory described by the provided key, not yet associated with any {@link Menu}.</p>
      *
-     * @param builder the builder to create from
-     * @return the ExtendedMenu instance
+     * @param key the key describing the inventory
+     * @return the new inventory
      */
-    private ExtendedMenu createPlayerMenu(Inventory.Builder builder) {
-        ExtendedMenu menu = new ExtendedMenu();
-        menu.initialize(builder.property(MenuProperty.of(menu)).build(plugin));
+    private InventoryPool.Entry buildInventory(InventoryPool.Key key) {
+        AtomicReference<Menu> owner = new AtomicReference<>();
+        if (this.headless) {
+            if (key.getRows() < 1) throw new UnsupportedOperationException("Headless menus must be chests");
+            return new InventoryPool.Entry(Headless.inventory(9 * key.getRows()), owner);
+        }
 
-        return menu;
+        Inventory.Builder builder;
+        if (key.getRows() > 0) {
+            builder = Inventory.builder()
+                .of(key.getArchetype())
+                .property(InventoryTitle.of(key.getTitle()))
+                .property(InventoryDimension.of(9, key.getRows()));
+        } else {
+            builder = Inventory.builder()
+                .property(InventoryTitle.of(key.getTitle()))
+                .of(key.getArchetype());
+        }
+
+        Inventory inventory = builder.property(new PooledMenuProperty(owner)).build(this.plugin);
+        return new InventoryPool.Entry(inventory, owner);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Fills the pool of inventories described by the provided key up to the given count.</p>
+     *
+     * @param key the key describing the inventories
+     * @param count how many inventories the pool should hold
+     */
+    private void prepareMenus(InventoryPool.Key key, int count) {
+        if (count > this.inventoryPool.getMaximumSize()) this.inventoryPool.setMaximumSize(count);
+        if (count > this.inventoryPool.getMaximumTotal()) this.inventoryPool.setMaximumTotal(count);
+        while (this.inventoryPool.size(key) < count) this.inventoryPool.release(key, this.buildInventory(key));
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Detaches a disposed {@link Menu} from its inventory, returning the inventory to the pool. The Menu must not
+     * have any viewers.</p>
+     *
+     * @param menu the Menu to release
+     */
+    void releaseMenu(Menu menu) {
+        if (menu.poolEntry == null) return;
+
+        menu.clearButtons();
+        Menu.menus.remove(menu);
+        this.renderQueue.remove(menu);
+
+        this.inventoryPool.release(menu.poolKey, menu.poolEntry);
+        menu.poolEntry = null;
     }
 
     /**
@@ -371,13 +1608,17 @@ public class Boxboy {
             this.fromContainer(e.getTargetInventory()).ifPresent(viewer -> {
                 Menu.viewerMap.put(viewer.getUniqueId(), menu);
                 menu.addViewer(viewer);
+                this.touchViewer(viewer.getUniqueId());
+                if (FlightEvent.OPEN.isEnabled()) FlightEvent.OPEN.emit(Watchdog.describe(menu), viewer.getName());
+                if (this.recorder != null) this.recorder.open(menu, viewer.getUniqueId());
+                if (this.analytics != null) this.analytics.open(menu, viewer);
 
                 if (menu instanceof ExtendedMenu) {
                     if (!this.hasStoredInventory(viewer)) this.storePlayer(viewer);
                     ((ExtendedMenu) menu).updatePlayer(viewer);
                 } else if (this.hasStoredInventory(viewer)) this.restorePlayer(viewer);
 
-                Task.builder().execute(() -> Boxboy.updatePlayerInventory(viewer)).submit(this.plugin);
+                this.queueResync(viewer);
             }));
     }
 
@@ -385,20 +1626,36 @@ public class Boxboy {
     public void onClose(InteractInventoryEvent.Close e) {
         e.getTargetInventory().getInventoryProperty(MenuProperty.class).map(MenuProperty::getValue).ifPresent(menu ->
             this.fromContainer(e.getTargetInventory()).ifPresent(viewer -> {
-                if (this.hasStoredInventory(viewer)) this.restorePlayer(viewer);
-                Task.builder().execute(() -> Boxboy.updatePlayerInventory(viewer)).submit(this.plugin);
+                // Keep the inventory stored if we're only switching over to another extended menu.
+                boolean switching = this.pendingSwitches.get(viewer.getUniqueId()) instanceof ExtendedMenu;
+                if (!switching && this.hasStoredInventory(viewer)) this.restorePlayer(viewer);
+                this.queueResync(viewer);
 
+                // Players leaving the server may have had their close published already.
+                boolean viewing = menu.getViewers().contains(viewer.getUniqueId());
                 menu.removeViewer(viewer);
                 Menu.viewerMap.remove(viewer.getUniqueId());
+                if (FlightEvent.CLOSE.isEnabled()) FlightEvent.CLOSE.emit(Watchdog.describe(menu), viewer.getName());
+                if (this.recorder != null) this.recorder.close(menu, viewer.getUniqueId());
+                if (this.analytics != null && viewing) this.analytics.close(menu, viewer);
+
+                // Inventories shouldn't be cleared while being closed; let the next tick take care of it.
+                if (menu.isDisposed() && menu.getViewers().isEmpty()) this.pendingReleases.add(menu);
             }));
     }
 
     private void onLeave(Player leaver) {
         if (this.hasStoredInventory(leaver)) this.restorePlayer(leaver);
+        this.forgetViewer(leaver.getUniqueId());
         leaver.getOpenInventory().ifPresent(container -> {
-            this.fromPlayer(leaver).ifPresent(menu -> menu.removeViewer(leaver));
+            this.fromPlayer(leaver).ifPresent(menu -> {
+                menu.removeViewer(leaver);
+                if (this.analytics != null) this.analytics.close(menu, leaver);
+            });
             Menu.viewerMap.remove(leaver.getUniqueId());
         });
+
+        Menu.menus.forEach(menu -> menu.clearOverlay(leaver));
     }
 
     @Listener
@@ -408,13 +1665,18 @@ public class Boxboy {
 
     @Listener
     public void onStop(GameStoppingServerEvent e) {
+        this.stopCapture();
         Sponge.getServer().getOnlinePlayers().forEach(this::onLeave);
+        this.stopAnalytics();
+        this.closeJournal();
     }
 
     @Listener
     public void onClick(ClickInventoryEvent e) {
+        long received = System.nanoTime();
         e.getCause().first(Player.class).ifPresent(clicker ->
             this.fromPlayer(clicker).ifPresent(menu -> {
+                this.touchViewer(clicker.getUniqueId());
                 ClickType type = ClickType.fromEvent(e);
                 boolean first = true;
                 boolean cancelled = false;
@@ -430,16 +1692,9 @@ public class Boxboy {
                             ItemStack cursorItem = trans.getFinal().createStack();
                             if (cursorItem.getType() == ItemTypes.AIR) cursorItem = null;
 
-                            ClickContext context = new ClickContext(type, menu, clicker, cursorItem);
-                            OfferContext oContext = new OfferContext(menu, clicker, cursorItem);
-                            Optional<Button> button = menu.getButton(slot);
-
-                            if (button.isPresent()) {
-                                if (button.get().offer(oContext)) exempt = trans;
-                                button.get().onClick(context);
-
-                                context.getNewCursor().ifPresent(it -> e.getCursorTransaction().setCustom(it.createSnapshot()));
-                            }
+                            ClickContext context = new ClickContext(type, menu, clicker, cursorItem, slot);
+                            if (this.dispatchClick(context, received)) exempt = trans;
+                            context.getNewCursor().ifPresent(it -> e.getCursorTransaction().setCustom(it.createSnapshot()));
                         }
 
                         // If ANY menu slots are messed with, cancel all transactions.
@@ -451,6 +1706,9 @@ public class Boxboy {
                 }
 
                 if (cancelled) {
+                    // The client gets sent the shared contents of the slots being restored.
+                    menu.resendOverlays(clicker);
+
                     for (SlotTransaction it : e.getTransactions()) if (it != exempt) it.setValid(false);
                     if (exempt == null) e.getCursorTransaction().setValid(false);
                     if (e.getCursorTransaction().getCustom().isPresent()) e.getCursorTransaction().setValid(true);
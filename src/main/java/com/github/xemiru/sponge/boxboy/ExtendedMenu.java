@@ -24,11 +24,14 @@
 package com.github.xemiru.sponge.boxboy;
 
 import com.github.xemiru.sponge.boxboy.button.Button;
-import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.item.inventory.ItemStack;
 import org.spongepowered.api.scheduler.Task;
 
+import java.util.BitSet;
+import java.util.UUID;
+
 /**
  * An extension of {@link Menu}s, allowing use of the bottom inventory (typically the viewing {@link Player}'s
  * inventory) as part of the menu.
@@ -38,15 +41,22 @@ import org.spongepowered.api.scheduler.Task;
 public class ExtendedMenu extends Menu {
 
     @Override
-    void initialize(Inventory inv) {
-        super.initialize(inv);
-        this.buttons = new Button[inv.capacity() + 36]; // 36 slots of the player inventory
+    int getButtonCapacity(Inventory inv) {
+        return inv.capacity() + 36; // 36 slots of the player inventory
     }
 
     @Override
-    public void updateInventory() {
-        super.updateInventory();
-        Sponge.getServer().getOnlinePlayers().forEach(this::updatePlayer);
+    int updateInventory(BitSet slots) {
+        int written = super.updateInventory(slots);
+        if (this.getViewers().isEmpty()) return written;
+
+        // Resolve the bottom inventory once; each viewer's own inventory still has to be written, and is then synced
+        // to their client by the server like any other inventory change. Each viewer pays for their own writes.
+        Boxboy boxboy = Boxboy.get();
+        ItemStack[] reps = this.resolveBottom(slots);
+        for (UUID uid : this.getViewers())
+            boxboy.getPlayer(uid).ifPresent(p -> boxboy.chargeViewer(uid, this.writePlayer(p, reps, slots)));
+        return written;
     }
 
     /**
@@ -57,7 +67,75 @@ public class ExtendedMenu extends Menu {
      * @param p the Player to update the inventory of
      */
     void updatePlayer(Player p) {
-        if (this.isViewingMenu(p)) Menu.updateInventory(this.buttons.length - 36, this.buttons, p.getInventory());
+        this.updatePlayer(p, null);
+    }
+
+    /**
+     * Updates the given slots of a {@link Player}'s inventory with the contents of this {@link ExtendedMenu}'s bottom
+     * inventory.
+     *
+     * <p>This method is a no-op if the target player does not actually have this ExtendedMenu open.</p>
+     *
+     * @param p the Player to update the inventory of
+     * @param slots the menu indices of the slots to update, or null to update all slots
+     */
+    void updatePlayer(Player p, BitSet slots) {
+        if (this.isViewingMenu(p)) this.writePlayer(p, this.resolveBottom(slots), slots);
+    }
+
+    /**
+     * Resolves the representatives of the {@link Button}s in the given slots of this {@link ExtendedMenu}'s bottom
+     * inventory.
+     *
+     * @param slots the menu indices of the slots to resolve, or null to resolve all slots
+     * @return the representatives, indexed by slot within the bottom inventory
+     */
+    private ItemStack[] resolveBottom(BitSet slots) {
+        int top = this.buttons.length - 36;
+        ItemStack[] reps = new ItemStack[36];
+        for (int i = 0; i < 36; i++) {
+            Button button = this.buttons[top + i];
+            if (button != null && (slots == null || slots.get(top + i))) reps[i] = Menu.representativeOf(button);
+        }
+
+        return reps;
+    }
+
+    /**
+     * Writes resolved representatives to the given slots of a {@link Player}'s inventory, leaving out slots covered
+     * by the Player's overlay.
+     *
+     * @param p the Player to update the inventory of
+     * @param reps the representatives to write, indexed by slot within the bottom inventory
+     * @param slots the menu indices of the slots to update, or null to update all slots
+     * @return the number of slots whose contents were changed
+     */
+    private int writePlayer(Player p, ItemStack[] reps, BitSet slots) {
+        int top = this.buttons.length - 36;
+        BitSet overlaid = this.getOverlaidSlots(p);
+        if (overlaid != null) {
+            // Overlaid slots are written separately.
+            BitSet filtered = slots == null ? new BitSet() : (BitSet) slots.clone();
+            if (slots == null) filtered.set(top, this.buttons.length);
+            filtered.andNot(overlaid);
+            slots = filtered;
+        }
+
+        return Menu.writeInventory(top, reps, SlotLayout.of(p), slots);
+    }
+
+    @Override
+    void writeOverlay(Player player, int index, ItemStack rep) {
+        int top = this.buttons.length - 36;
+        if (index < top) {
+            super.writeOverlay(player, index, rep);
+            return;
+        }
+
+        // The bottom inventory belongs to the player; overlays can simply be written to it.
+        Inventory slot = SlotLayout.of(player).get(index - top);
+        slot.clear();
+        if (!rep.isEmpty()) slot.set(rep);
     }
 
 }
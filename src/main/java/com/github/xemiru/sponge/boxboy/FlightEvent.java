@@ -0,0 +1,209 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.util.ReflectUtil;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Java Flight Recorder event type emitted by {@link Boxboy}.
+ *
+ * <p>Boxboy targets Java 8, where the Flight Recorder API is not always present; event types are thus defined at
+ * runtime through reflection, and are silently unavailable if the running JVM has no Flight Recorder. Whether an event
+ * type is enabled is only checked once per tick, so emitting events costs a field read while no recording is
+ * running. Field values are passed as varargs; callers only build them once {@link #begin()} returned an event, or
+ * {@link #isEnabled()} returned true, so that nothing is allocated while no recording is running.</p>
+ */
+class FlightEvent {
+
+    private static Method m_create, m_newEvent, m_getEventType, m_isEnabled, m_begin, m_set, m_commit;
+    private static Constructor<?> c_annotationElement, c_valueDescriptor;
+    private static Class<?> a_name, a_label, a_category;
+    private static boolean available = true;
+
+    static final FlightEvent OPEN, CLOSE, RENDER, ANIMATE, CLICK;
+
+    static {
+        try {
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            FlightEvent.c_annotationElement = annotationElement.getConstructor(Class.class, Object.class);
+            FlightEvent.c_valueDescriptor = valueDescriptor.getConstructor(Class.class, String.class);
+            FlightEvent.a_name = Class.forName("jdk.jfr.Name");
+            FlightEvent.a_label = Class.forName("jdk.jfr.Label");
+            FlightEvent.a_category = Class.forName("jdk.jfr.Category");
+
+            FlightEvent.m_create = ReflectUtil.getDeclaredMethod("jdk.jfr.EventFactory", new String[]{"create"},
+                "java.util.List", "java.util.List");
+            FlightEvent.m_newEvent = ReflectUtil.getDeclaredMethod("jdk.jfr.EventFactory", new String[]{"newEvent"});
+            FlightEvent.m_getEventType = ReflectUtil.getDeclaredMethod("jdk.jfr.EventFactory",
+                new String[]{"getEventType"});
+            FlightEvent.m_isEnabled = ReflectUtil.getDeclaredMethod("jdk.jfr.EventType", new String[]{"isEnabled"});
+            FlightEvent.m_begin = ReflectUtil.getDeclaredMethod("jdk.jfr.Event", new String[]{"begin"});
+            FlightEvent.m_set = ReflectUtil.getDeclaredMethod("jdk.jfr.Event", new String[]{"set"},
+                "int", "java.lang.Object");
+            FlightEvent.m_commit = ReflectUtil.getDeclaredMethod("jdk.jfr.Event", new String[]{"commit"});
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ignored) {
+            FlightEvent.available = false;
+        }
+
+        OPEN = new FlightEvent("Open", "Menu Open",
+            "menu", String.class, "viewer", String.class);
+        CLOSE = new FlightEvent("Close", "Menu Close",
+            "menu", String.class, "viewer", String.class);
+        RENDER = new FlightEvent("Render", "Menu Render",
+            "menu", String.class, "slots", int.class);
+        ANIMATE = new FlightEvent("Animate", "Animation Advance",
+            "detail", String.class, "decorative", boolean.class, "menus", int.class);
+        CLICK = new FlightEvent("Click", "Click Dispatch",
+            "menu", String.class, "viewer", String.class, "slot", int.class, "button", String.class,
+            "type", String.class);
+    }
+
+    /**
+     * @return whether or not the running JVM supports Flight Recorder events
+     */
+    static boolean isAvailable() {
+        return FlightEvent.available;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Checks whether each event type is enabled by a running recording.</p>
+     */
+    static void refreshAll() {
+        if (!FlightEvent.available) return;
+        for (FlightEvent event : new FlightEvent[]{OPEN, CLOSE, RENDER, ANIMATE, CLICK}) event.refresh();
+    }
+
+    private Object factory;
+    private boolean enabled;
+
+    /**
+     * Defines a new event type.
+     *
+     * @param name the name of the event type, without the Boxboy prefix
+     * @param label the human-readable name of the event type
+     * @param fields the names and types of the event type's fields, alternating
+     */
+    private FlightEvent(String name, String label, Object... fields) {
+        this.factory = null;
+        this.enabled = false;
+        if (!FlightEvent.available) return;
+
+        try {
+            String[] category = {"Boxboy"};
+            List<Object> annotations = Arrays.asList(
+                FlightEvent.c_annotationElement.newInstance(FlightEvent.a_name, "boxboy." + name),
+                FlightEvent.c_annotationElement.newInstance(FlightEvent.a_label, label),
+                FlightEvent.c_annotationElement.newInstance(FlightEvent.a_category, category));
+
+            List<Object> descriptors = new ArrayList<>();
+            for (int i = 0; i < fields.length; i += 2)
+                descriptors.add(FlightEvent.c_valueDescriptor.newInstance(fields[i + 1], fields[i]));
+
+            this.factory = FlightEvent.m_create.invoke(null, annotations, descriptors);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            this.factory = null;
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Checks whether this event type is enabled by a running recording.</p>
+     */
+    private void refresh() {
+        if (this.factory == null) return;
+
+        try {
+            this.enabled = (Boolean) FlightEvent.m_isEnabled.invoke(FlightEvent.m_getEventType.invoke(this.factory));
+        } catch (IllegalAccessException | InvocationTargetException ignored) {
+            this.enabled = false;
+        }
+    }
+
+    /**
+     * @return whether or not this event type is currently being recorded
+     */
+    boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Starts timing a new event of this type.</p>
+     *
+     * @return the new event, or null if this event type isn't being recorded
+     */
+    Object begin() {
+        if (!this.enabled) return null;
+
+        try {
+            Object event = FlightEvent.m_newEvent.invoke(this.factory);
+            FlightEvent.m_begin.invoke(event);
+            return event;
+        } catch (IllegalAccessException | InvocationTargetException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Commits an event of this type, with the given field values in the order they were defined in.</p>
+     *
+     * @param event the event returned by {@link #begin()}, or null to commit nothing
+     * @param values the values of the event's fields
+     */
+    void commit(Object event, Object... values) {
+        if (event == null) return;
+
+        try {
+            for (int i = 0; i < values.length; i++) FlightEvent.m_set.invoke(event, i, values[i]);
+            FlightEvent.m_commit.invoke(event);
+        } catch (IllegalAccessException | InvocationTargetException ignored) {
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Commits an event of this type without any duration.</p>
+     *
+     * @param values the values of the event's fields
+     */
+    void emit(Object... values) {
+        if (this.enabled) this.commit(this.begin(), values);
+    }
+
+}
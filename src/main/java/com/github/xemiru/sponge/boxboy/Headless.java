@@ -0,0 +1,328 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import org.slf4j.Logger;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.ItemType;
+import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Stand-ins for the parts of a server {@link Boxboy} needs, letting it run inside a plain JVM.
+ *
+ * <p>A headless Boxboy never touches {@link org.spongepowered.api.Sponge}: it registers no listeners, schedules no
+ * task and runs its main thread tasks on the next call to {@link Boxboy#tick()}. {@link Menu}s get fake inventories
+ * holding fake items, and only the {@link Player}s made here and given to
+ * {@link Boxboy#addSimulatedPlayer(Player)} exist. Used by {@link LoadScenario} and {@link WorkloadReplay}.</p>
+ */
+final class Headless {
+
+    private Headless() {
+    }
+
+    /**
+     * Starts a headless {@link Boxboy}, replacing the current instance.
+     *
+     * @param logger the logger Boxboy reports to
+     * @return the headless Boxboy
+     */
+    static Boxboy boot(Logger logger) {
+        return new Boxboy(Objects.requireNonNull(logger));
+    }
+
+    /**
+     * Creates a {@link Player} without a client. It answers to its identity and holds an inventory of 36 fake slots;
+     * everything else returns an empty value, and it is never online.
+     *
+     * @param uid the UUID of the Player
+     * @param name the name of the Player
+     * @return the Player
+     */
+    static Player player(UUID uid, String name) {
+        Inventory[] inventory = new Inventory[1];
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[] { Player.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getUniqueId":
+                        return uid;
+                    case "getName":
+                        return name;
+                    case "getInventory":
+                        if (inventory[0] == null) inventory[0] = Headless.inventory(36, method.getReturnType());
+                        return inventory[0];
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return uid.hashCode();
+                    case "toString":
+                        return name;
+                }
+
+                return Headless.empty(method);
+            });
+    }
+
+    /**
+     * Creates an {@link Inventory} of fake slots, each holding at most one stack.
+     *
+     * @param capacity the number of slots
+     * @return the Inventory
+     */
+    static Inventory inventory(int capacity) {
+        return Headless.inventory(capacity, Inventory.class);
+    }
+
+    /**
+     * Creates a fake {@link ItemStack} of the given type.
+     *
+     * @param type the type of the ItemStack
+     * @return the ItemStack
+     */
+    static ItemStack item(ItemType type) {
+        return Headless.item(type, 1);
+    }
+
+    /**
+     * Creates a fake {@link ItemStack} of the given type and quantity. Fake ItemStacks are equal in content if their
+     * types and quantities are, and can be snapshotted.
+     *
+     * @param type the type of the ItemStack
+     * @param quantity the quantity of the ItemStack
+     * @return the ItemStack
+     */
+    static ItemStack item(ItemType type, int quantity) {
+        return (ItemStack) new FakeItem(ItemStack.class, type, quantity).proxy;
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Creates an {@link Inventory} of fake slots implementing the given type of Inventory.</p>
+     *
+     * @param capacity the number of slots
+     * @param type the type of Inventory to implement
+     * @return the Inventory
+     */
+    private static Inventory inventory(int capacity, Class<?> type) {
+        List<Inventory> slots = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) slots.add((Inventory) new FakeSlot().proxy);
+
+        Class<?>[] types = type == Inventory.class || !type.isInterface() ? new Class<?>[] { Inventory.class }
+            : new Class<?>[] { type, Inventory.class };
+        return (Inventory) Proxy.newProxyInstance(Headless.class.getClassLoader(), types, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "capacity":
+                    return capacity;
+                case "size":
+                    return (int) slots.stream().filter(slot -> slot.peek().isPresent()).count();
+                case "slots":
+                    return Collections.unmodifiableList(slots);
+                case "clear":
+                    slots.forEach(Inventory::clear);
+                    return null;
+                case "offer":
+                    for (Inventory slot : slots) {
+                        if (slot.peek().isPresent()) continue;
+                        slot.set((ItemStack) args[0]);
+                        break;
+                    }
+
+                    return null;
+                case "getInventoryProperty":
+                    return Optional.empty();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "HeadlessInventory[" + capacity + "]";
+            }
+
+            throw new UnsupportedOperationException("Headless inventories can't " + method.getName());
+        });
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the empty value of the return type of the given method.</p>
+     *
+     * @param method the method
+     * @return the empty value
+     */
+    private static Object empty(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == Optional.class) return Optional.empty();
+        if (type == boolean.class) return false;
+        if (type == void.class || !type.isPrimitive()) return null;
+        if (type == char.class) return '\0';
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        if (type == long.class) return 0L;
+        if (type == int.class) return 0;
+        if (type == short.class) return (short) 0;
+        return (byte) 0;
+    }
+
+    /**
+     * A fake {@link ItemStack}, {@link ItemStackSnapshot} or snapshot {@link DataContainer}, depending on the type it
+     * implements.
+     */
+    private static class FakeItem implements InvocationHandler {
+
+        private Class<?> form;
+        private ItemType type;
+        private int quantity;
+        private Object proxy;
+
+        private FakeItem(Class<?> form, ItemType type, int quantity) {
+            this.form = form;
+            this.type = Objects.requireNonNull(type);
+            this.quantity = quantity;
+            this.proxy = Proxy.newProxyInstance(Headless.class.getClassLoader(), new Class<?>[] { form }, this);
+        }
+
+        /**
+         * @param other the other object
+         * @return if the other object is a fake item of the same type and quantity as this one
+         */
+        private boolean isSimilar(Object other) {
+            if (other == null || !Proxy.isProxyClass(other.getClass())) return false;
+
+            InvocationHandler handler = Proxy.getInvocationHandler(other);
+            if (!(handler instanceof FakeItem)) return false;
+
+            FakeItem item = (FakeItem) handler;
+            return item.type == this.type && item.quantity == this.quantity;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getType":
+                    return this.type;
+                case "getQuantity":
+                    return this.quantity;
+                case "setQuantity":
+                    this.quantity = (Integer) args[0];
+                    return null;
+                case "isEmpty":
+                    return this.quantity <= 0;
+                case "copy":
+                case "createStack":
+                    return new FakeItem(ItemStack.class, this.type, this.quantity).proxy;
+                case "createSnapshot":
+                    return new FakeItem(ItemStackSnapshot.class, this.type, this.quantity).proxy;
+                case "toContainer":
+                    return new FakeItem(DataContainer.class, this.type, this.quantity).proxy;
+                case "equalTo":
+                    return this.isSimilar(args[0]);
+                case "equals":
+                    return this.form == DataContainer.class ? this.isSimilar(args[0]) : proxy == args[0];
+                case "hashCode":
+                    return this.form == DataContainer.class ? Objects.hash(this.type, this.quantity)
+                        : System.identityHashCode(proxy);
+                case "toString":
+                    return this.form.getSimpleName() + "[" + this.type + " x" + this.quantity + "]";
+            }
+
+            throw new UnsupportedOperationException("Headless items can't " + method.getName());
+        }
+
+    }
+
+    /**
+     * A fake slot, holding at most one {@link ItemStack}.
+     */
+    private static class FakeSlot implements InvocationHandler {
+
+        private ItemStack item;
+        private Object proxy;
+
+        private FakeSlot() {
+            this.proxy = Proxy.newProxyInstance(Headless.class.getClassLoader(), new Class<?>[] { Inventory.class },
+                this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "capacity":
+                    return 1;
+                case "size":
+                    return this.item == null ? 0 : 1;
+                case "totalItems":
+                    return this.item == null ? 0 : this.item.getQuantity();
+                case "isEmpty":
+                    return this.item == null;
+                case "peek":
+                    return Optional.ofNullable(this.item == null ? null : this.item.copy());
+                case "poll":
+                    Optional<ItemStack> polled = Optional.ofNullable(this.item);
+                    this.item = null;
+                    return polled;
+                case "contains":
+                    return this.item != null && this.item.equalTo((ItemStack) args[0]);
+                case "clear":
+                    this.item = null;
+                    return null;
+                case "set":
+                    ItemStack item = (ItemStack) args[0];
+                    this.item = item == null || item.isEmpty() ? null : item.copy();
+                    return null;
+                case "slots":
+                    return Collections.singletonList(proxy);
+                case "getInventoryProperty":
+                    return Optional.empty();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "HeadlessSlot[" + this.item + "]";
+            }
+
+            throw new UnsupportedOperationException("Headless slots can't " + method.getName());
+        }
+
+    }
+
+    // endregion
+
+}
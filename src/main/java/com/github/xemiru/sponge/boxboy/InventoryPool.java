@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.item.inventory.InventoryArchetype;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A bounded pool of pre-built {@link Inventory} instances for use by {@link Menu}s, grouped by archetype, size and
+ * title.
+ *
+ * <p>Each group holds a limited number of inventories, and so does the pool as a whole. Once the pool is full, the
+ * groups used least recently are dropped first, so Menus titled differently every time (e.g. after a player) can't
+ * keep inventories around for good.</p>
+ */
+class InventoryPool {
+
+    /**
+     * Identifies a group of interchangeable {@link Inventory} instances.
+     */
+    static class Key {
+
+        private InventoryArchetype archetype;
+        private int rows;
+        private Text title;
+
+        /**
+         * @param archetype the archetype of the Inventory
+         * @param rows the row count of the Inventory, or -1 to use the archetype's default
+         * @param title the title of the Inventory
+         */
+        Key(InventoryArchetype archetype, int rows, Text title) {
+            this.archetype = Objects.requireNonNull(archetype);
+            this.rows = rows;
+            this.title = Objects.requireNonNull(title);
+        }
+
+        InventoryArchetype getArchetype() {
+            return this.archetype;
+        }
+
+        int getRows() {
+            return this.rows;
+        }
+
+        Text getTitle() {
+            return this.title;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key other = (Key) o;
+            return this.rows == other.rows && this.archetype.equals(other.archetype) && this.title.equals(other.title);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.archetype, this.rows, this.title);
+        }
+
+    }
+
+    /**
+     * Data bag class for pooled inventories.
+     */
+    static class Entry {
+
+        private Inventory inventory;
+        private AtomicReference<Menu> owner;
+        private SlotLayout layout;
+
+        Entry(Inventory inventory, AtomicReference<Menu> owner) {
+            this.inventory = inventory;
+            this.owner = owner;
+            this.layout = null;
+        }
+
+        Inventory getInventory() {
+            return this.inventory;
+        }
+
+        SlotLayout getLayout() {
+            if (this.layout == null) this.layout = SlotLayout.of(this.inventory);
+            return this.layout;
+        }
+
+        /**
+         * Associates the inventory with another {@link Menu}, as reported by its {@link PooledMenuProperty}.
+         *
+         * @param menu the new Menu, or null if the inventory is unused
+         */
+        void setMenu(Menu menu) {
+            this.owner.set(menu);
+        }
+
+    }
+
+    private int maximumSize;
+    private int maximumTotal;
+    private int total;
+    private Map<Key, Deque<Entry>> pools;
+
+    InventoryPool(int maximumSize, int maximumTotal) {
+        this.maximumSize = maximumSize;
+        this.maximumTotal = maximumTotal;
+        this.total = 0;
+        this.pools = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Drops the groups used least recently until this pool holds no more than its maximum total, sparing the group
+     * of the given {@link Key}.</p>
+     *
+     * @param keep the Key of the group to spare
+     */
+    private void evict(Key keep) {
+        Iterator<Map.Entry<Key, Deque<Entry>>> it = this.pools.entrySet().iterator();
+        while (this.total > this.maximumTotal && it.hasNext()) {
+            Map.Entry<Key, Deque<Entry>> eldest = it.next();
+            if (eldest.getKey().equals(keep)) continue;
+
+            this.total -= eldest.getValue().size();
+            it.remove();
+        }
+    }
+
+    // endregion
+
+    /**
+     * Returns the maximum number of idle inventories held per {@link Key}.
+     *
+     * @return the maximum pool size per Key
+     */
+    int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * Sets the maximum number of idle inventories held per {@link Key}, dropping any excess ones.
+     *
+     * @param maximumSize the maximum pool size per Key
+     */
+    void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+        this.pools.values().removeIf(pool -> {
+            while (pool.size() > maximumSize) {
+                pool.pollLast();
+                this.total--;
+            }
+
+            return pool.isEmpty();
+        });
+    }
+
+    /**
+     * Returns the maximum number of idle inventories held across all {@link Key}s.
+     *
+     * @return the maximum pool size
+     */
+    int getMaximumTotal() {
+        return this.maximumTotal;
+    }
+
+    /**
+     * Sets the maximum number of idle inventories held across all {@link Key}s, dropping the groups used least
+     * recently until it is met.
+     *
+     * @param maximumTotal the maximum pool size
+     */
+    void setMaximumTotal(int maximumTotal) {
+        this.maximumTotal = maximumTotal;
+        this.evict(null);
+    }
+
+    /**
+     * Returns the number of idle inventories held across all {@link Key}s.
+     *
+     * @return the number of idle inventories
+     */
+    int size() {
+        return this.total;
+    }
+
+    /**
+     * Returns the number of idle inventories held for the given {@link Key}.
+     *
+     * @param key the Key to query
+     * @return the number of idle inventories for the Key
+     */
+    int size(Key key) {
+        Deque<Entry> pool = this.pools.get(key);
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * Takes an idle inventory matching the given {@link Key} out of this pool.
+     *
+     * @param key the Key of the inventory
+     * @return an idle inventory, or null if there are none
+     */
+    Entry lease(Key key) {
+        Deque<Entry> pool = this.pools.get(key);
+        if (pool == null) return null;
+
+        Entry entry = pool.pollFirst();
+        if (pool.isEmpty()) this.pools.remove(key);
+        this.total--;
+        return entry;
+    }
+
+    /**
+     * Returns an inventory to this pool. The inventory is cleared and detached from its {@link Menu} first; it is
+     * dropped if the pool for its {@link Key} is already full. Groups of other Keys are dropped, least recently used
+     * first, if this pool is full as a whole.
+     *
+     * @param key the Key of the inventory
+     * @param entry the inventory to return
+     * @return if the inventory was kept by the pool
+     */
+    boolean release(Key key, Entry entry) {
+        entry.inventory.clear();
+        entry.setMenu(null);
+
+        Deque<Entry> pool = this.pools.computeIfAbsent(key, k -> new ArrayDeque<>());
+        if (pool.size() >= this.maximumSize || pool.size() >= this.maximumTotal) {
+            if (pool.isEmpty()) this.pools.remove(key);
+            return false;
+        }
+
+        pool.addFirst(entry);
+        this.total++;
+        this.evict(key);
+        return true;
+    }
+
+}
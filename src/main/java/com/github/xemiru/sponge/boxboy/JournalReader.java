@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of a {@link TransactionJournal} in order, for auditing.
+ *
+ * <p>Each segment is read up to its first torn or blank record. Errors reading the journal are thrown as
+ * {@link UncheckedIOException}s.</p>
+ */
+public class JournalReader implements Iterator<JournalRecord>, Closeable {
+
+    private List<Path> files;
+    private int fileIndex;
+    private FileChannel channel;
+    private long expected;
+    private byte[] bytes;
+    private ByteBuffer buf;
+    private CRC32 crc;
+    private JournalRecord next;
+    private boolean advanced;
+
+    JournalReader(List<Path> files) {
+        this.files = files;
+        this.fileIndex = 0;
+        this.channel = null;
+        this.bytes = new byte[TransactionJournal.RECORD_SIZE];
+        this.buf = ByteBuffer.wrap(this.bytes);
+        this.crc = new CRC32();
+        this.next = null;
+        this.advanced = false;
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Fills the buffer from the current segment.</p>
+     *
+     * @param size the number of bytes to read
+     * @return false if the segment ended first
+     */
+    private boolean fill(int size) throws IOException {
+        this.buf.clear().limit(size);
+        while (this.buf.hasRemaining()) if (this.channel.read(this.buf) < 0) return false;
+        return true;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Reads the next valid record, moving on through the segments as they end.</p>
+     */
+    private void advance() throws IOException {
+        this.next = null;
+        while (this.next == null) {
+            if (this.channel == null) {
+                if (this.fileIndex >= this.files.size()) return;
+
+                this.channel = FileChannel.open(this.files.get(this.fileIndex++), StandardOpenOption.READ);
+                if (!this.fill(TransactionJournal.HEADER_SIZE) || this.buf.getInt(0) == 0) {
+                    this.channel.close(); // left behind by a crash while it was being created
+                    this.channel = null;
+                    continue;
+                }
+
+                if (this.buf.getInt(0) != TransactionJournal.MAGIC)
+                    throw new IOException("Not a Boxboy transaction journal");
+                if (this.buf.getInt(4) != TransactionJournal.VERSION)
+                    throw new IOException("Unsupported journal version " + this.buf.getInt(4));
+                this.expected = this.buf.getLong(8);
+            }
+
+            if (this.fill(TransactionJournal.RECORD_SIZE))
+                this.next = TransactionJournal.decode(this.bytes, this.expected, this.crc);
+
+            if (this.next == null) {
+                this.channel.close();
+                this.channel = null;
+            } else this.expected++;
+        }
+    }
+
+    // endregion
+
+    @Override
+    public boolean hasNext() {
+        if (!this.advanced) {
+            try {
+                this.advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            this.advanced = true;
+        }
+
+        return this.next != null;
+    }
+
+    @Override
+    public JournalRecord next() {
+        if (!this.hasNext()) throw new NoSuchElementException();
+
+        this.advanced = false;
+        return this.next;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) this.channel.close();
+        this.channel = null;
+        this.fileIndex = this.files.size();
+    }
+
+}
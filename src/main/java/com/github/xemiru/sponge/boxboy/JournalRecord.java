@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import java.util.UUID;
+
+/**
+ * A record read back from a {@link TransactionJournal}.
+ *
+ * <p>The meaning of the type, amount and reference of a record is up to the plugin journaling it; for instance, a shop
+ * could journal purchases as one type, with the price in its smallest currency unit as the amount and the id of the
+ * bought listing as the reference.</p>
+ */
+public class JournalRecord {
+
+    private long sequence;
+    private long time;
+    private UUID player;
+    private int slot;
+    private int type;
+    private long amount;
+    private long reference;
+
+    JournalRecord(long sequence, long time, UUID player, int slot, int type, long amount, long reference) {
+        this.sequence = sequence;
+        this.time = time;
+        this.player = player;
+        this.slot = slot;
+        this.type = type;
+        this.amount = amount;
+        this.reference = reference;
+    }
+
+    /**
+     * @return the sequence number of this record, counting up from 1 across the whole journal
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * @return the time this record was appended at, in epoch milliseconds
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return the {@link UUID} of the player who caused this record
+     */
+    public UUID getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * @return the clicked slot, or -1 if unknown
+     */
+    public int getSlot() {
+        return this.slot;
+    }
+
+    /**
+     * @return the type of this record
+     */
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * @return the amount of this record
+     */
+    public long getAmount() {
+        return this.amount;
+    }
+
+    /**
+     * @return the reference of this record
+     */
+    public long getReference() {
+        return this.reference;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d at %d by %s in slot %d: type %d, amount %d, reference %d",
+            this.sequence, this.time, this.player, this.slot, this.type, this.amount, this.reference);
+    }
+
+}
@@ -0,0 +1,558 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.ActionButton;
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
+import com.github.xemiru.sponge.boxboy.button.ScrollButton;
+import com.github.xemiru.sponge.boxboy.button.SlotButton;
+import com.github.xemiru.sponge.boxboy.util.AnimatedMenuPattern;
+import com.github.xemiru.sponge.boxboy.util.Animation;
+import com.github.xemiru.sponge.boxboy.util.ClickContext;
+import com.github.xemiru.sponge.boxboy.util.ClickType;
+import com.github.xemiru.sponge.boxboy.util.LatencyHistogram;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.ItemType;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.plugin.Plugin;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Generates synthetic load on the menu task and reports how its cost scales.
+ *
+ * <p>A scenario runs in steps. Each step simulates a number of players, each viewing a {@link Menu} of one of the
+ * configured kinds and clicking random slots of it at the configured rate. Once all steps have run, a report is
+ * produced as a single JSON object, meant to be kept and compared against reports of other versions of Boxboy.</p>
+ *
+ * <p>For each step, the report holds the number of clicks made and the rate they were handled at, the number of
+ * renders, the time taken per click and by the menu task per tick, and -- on JVMs able to measure it -- the memory
+ * allocated per click and by the menu task per tick. Clicks are made before the menu task runs and are measured
+ * separately; the menu task's figures only cover the work clicks leave for it, like rendering.</p>
+ *
+ * <p>Scenarios run on the server as part of the menu task, and should be run on a server without any players.
+ * Simulated players have no client; their inventories are fakes, written to by {@link ExtendedMenu}s like real ones
+ * would be.</p>
+ *
+ * <p>Scenarios can also run without a server, through {@link #main(String[])}: the default scenario is then run
+ * against a headless {@link Boxboy} using fake inventories and items, ticked back to back rather than 20 times per
+ * second. Headless reports are marked as such, and are only comparable to other headless reports.</p>
+ *
+ * <p>Methods of this class must be called on the main thread.</p>
+ */
+public class LoadScenario {
+
+    /**
+     * Runs the default scenario against a headless {@link Boxboy}, without a server, and prints its report.
+     *
+     * <p>The numbers of simulated players of each step may be given as arguments.</p>
+     *
+     * @param args the numbers of players of each step, if any
+     */
+    public static void main(String[] args) {
+        LoadScenario scenario = LoadScenario.defaults(Headless::item);
+        if (args.length > 0) scenario.steps(Arrays.stream(args).mapToInt(Integer::parseInt).toArray());
+
+        System.out.println(scenario.runHeadless(Headless.boot(LoggerFactory.getLogger("Boxboy"))));
+    }
+
+    /**
+     * Creates a scenario using one kind of {@link Menu} for each of Boxboy's features: plain Menus full of
+     * {@link ActionButton}s, the same in {@link ExtendedMenu}s, a shared Menu animated by an {@link AnimatedMenuPattern}
+     * and animated Buttons, and Menus holding a grid of {@link ScrollButton}s and {@link SlotButton}s.
+     *
+     * @return the scenario
+     */
+    public static LoadScenario defaults() {
+        return LoadScenario.defaults(type -> ItemStack.of(type, 1));
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Creates the scenario of {@link #defaults()}, creating its items through the given factory.</p>
+     *
+     * @param items creates an item of a given type
+     * @return the scenario
+     */
+    static LoadScenario defaults(Function<ItemType, ItemStack> items) {
+        Consumer<ClickContext> action = ClickContext::invalidateSlot;
+        return new LoadScenario()
+            .menu("menu", () -> {
+                Menu menu = Boxboy.get().createMenu(6, Text.of("Load: menu"));
+                for (int i = 0; i < menu.getCapacity(); i++)
+                    menu.setButton(i, ActionButton.of(items.apply(ItemTypes.STONE), action));
+
+                return menu;
+            }, false)
+            .menu("extended", () -> {
+                Menu menu = Boxboy.get().createExtendedMenu(6, Text.of("Load: extended"));
+                for (int i = 0; i < menu.getCapacity(); i++)
+                    menu.setButton(i, ActionButton.of(items.apply(ItemTypes.DIRT), action));
+
+                return menu;
+            }, false)
+            .menu("animated", () -> {
+                Menu menu = Boxboy.get().createMenu(6, Text.of("Load: animated"));
+                new AnimatedMenuPattern()
+                    .setButton('A', DummyButton.of(items.apply(ItemTypes.IRON_BLOCK)))
+                    .setButton('B', DummyButton.of(new Animation<ItemStack>()
+                        .frame(items.apply(ItemTypes.APPLE), 100)
+                        .frame(items.apply(ItemTypes.BREAD), 100)))
+                    .frame(250, "A A A A A", " B B B B ", "A A A A A", " B B B B ", "A A A A A", " B B B B ")
+                    .frame(250, " B B B B ", "A A A A A", " B B B B ", "A A A A A", " B B B B ", "A A A A A")
+                    .apply(menu);
+
+                return menu;
+            }, true)
+            .menu("grid", () -> {
+                Menu menu = Boxboy.get().createMenu(6, Text.of("Load: grid"));
+                for (int i = 0; i < menu.getCapacity(); i++) {
+                    menu.setButton(i, i % 2 == 0 ? SlotButton.of() : ScrollButton.of(
+                        ActionButton.of(items.apply(ItemTypes.COAL), action),
+                        ActionButton.of(items.apply(ItemTypes.IRON_INGOT), action),
+                        ActionButton.of(items.apply(ItemTypes.GOLD_INGOT), action)));
+                }
+
+                return menu;
+            }, false);
+    }
+
+    private Map<String, Supplier<Menu>> factories;
+    private Map<String, Boolean> shared;
+    private double clickRate;
+    private int[] steps;
+    private int ticksPerStep;
+    private int warmupTicks;
+    private long seed;
+
+    private Consumer<String> report;
+    private boolean finished;
+    private int step;
+    private int tick;
+    private Random random;
+    private List<Viewer> viewers;
+    private List<Menu> menus;
+    private List<String> results;
+
+    // per-step measurements
+    private LatencyHistogram tickTimes;
+    private LatencyHistogram clickTimes;
+    private long tickAllocations;
+    private long clickAllocations;
+    private long clicks;
+    private long renderStart;
+    private long wallStart;
+
+    /**
+     * Creates an empty scenario, to be given the kinds of {@link Menu} to simulate through
+     * {@link #menu(String, Supplier, boolean)}.
+     *
+     * <p>Simulated players click once per second by default, and steps of 1, 10, 50, 100 and 250 players are run for
+     * 200 ticks each.</p>
+     */
+    public LoadScenario() {
+        this.factories = new LinkedHashMap<>();
+        this.shared = new HashMap<>();
+        this.clickRate = 1;
+        this.steps = new int[] { 1, 10, 50, 100, 250 };
+        this.ticksPerStep = 200;
+        this.warmupTicks = 20;
+        this.seed = 0;
+        this.finished = false;
+    }
+
+    // region Internal methods
+
+    /**
+     * A simulated player and the {@link Menu} they view.
+     */
+    private static class Viewer {
+
+        private Player player;
+        private Menu menu;
+        private double pending;
+
+        private Viewer(Player player, Menu menu) {
+            this.player = player;
+            this.menu = menu;
+            this.pending = 0;
+        }
+
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Runs the clicks due this tick and records the cost of the menu task during the previous one. Called once per
+     * tick by {@link Boxboy}, before the menu task.</p>
+     *
+     * @return false once the scenario has finished
+     */
+    private boolean step() {
+        if (this.finished) return false;
+
+        Boxboy boxboy = Boxboy.get();
+        if (this.tick == 0) this.beginStep(this.steps[this.step]);
+        else if (this.tick > this.warmupTicks) {
+            this.tickTimes.record(boxboy.getLastTickTime());
+            this.tickAllocations += Math.max(0, boxboy.getLastTickAllocations());
+        }
+
+        if (this.tick == this.warmupTicks) {
+            this.clicks = 0;
+            this.clickTimes = new LatencyHistogram();
+            this.clickAllocations = 0;
+            this.renderStart = boxboy.getWatchdog().getRenderCount();
+            this.wallStart = System.nanoTime();
+        }
+
+        if (this.tick == this.warmupTicks + this.ticksPerStep) {
+            this.endStep();
+            if (++this.step >= this.steps.length) {
+                this.finish();
+                return false;
+            }
+
+            this.tick = 0;
+            return true;
+        }
+
+        long allocated = Boxboy.allocatedBytes();
+        double perTick = this.clickRate / 20;
+        for (Viewer viewer : this.viewers) {
+            viewer.pending += perTick;
+            while (viewer.pending >= 1) {
+                viewer.pending--;
+
+                int slot = this.random.nextInt(viewer.menu.getCapacity());
+                long received = System.nanoTime();
+                boxboy.touchViewer(viewer.player.getUniqueId());
+                boxboy.dispatchClick(new ClickContext(ClickType.PRIMARY, viewer.menu, viewer.player, null, slot),
+                    received);
+                this.clickTimes.record(System.nanoTime() - received);
+                this.clicks++;
+            }
+        }
+
+        if (allocated >= 0) this.clickAllocations += Boxboy.allocatedBytes() - allocated;
+        this.tick++;
+        return true;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Creates the simulated players of a step and opens their {@link Menu}s.</p>
+     *
+     * @param players the number of players to simulate
+     */
+    private void beginStep(int players) {
+        this.tickTimes = new LatencyHistogram();
+        this.clickTimes = new LatencyHistogram();
+        this.tickAllocations = 0;
+
+        Boxboy boxboy = Boxboy.get();
+        List<String> kinds = new ArrayList<>(this.factories.keySet());
+        Map<String, Menu> sharedMenus = new HashMap<>();
+        for (int i = 0; i < players; i++) {
+            String kind = kinds.get(i % kinds.size());
+            Menu menu = this.shared.get(kind) ? sharedMenus.get(kind) : null;
+            if (menu == null) {
+                menu = Objects.requireNonNull(this.factories.get(kind).get(), "Menu factory returned null");
+                this.menus.add(menu);
+                if (this.shared.get(kind)) sharedMenus.put(kind, menu);
+            }
+
+            UUID uid = UUID.randomUUID();
+            Player player = Headless.player(uid, "LoadTest-" + i);
+            Viewer viewer = new Viewer(player, menu);
+            viewer.pending = this.random.nextDouble(); // spread clicks over the tick they're due in
+            this.viewers.add(viewer);
+
+            Menu previous = Menu.viewerMap.put(uid, menu);
+            if (previous != null) previous.removeViewer(uid);
+            menu.addViewer(uid);
+            boxboy.addSimulatedPlayer(player);
+            boxboy.touchViewer(uid);
+            if (menu instanceof ExtendedMenu) ((ExtendedMenu) menu).updatePlayer(player);
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Records the results of the current step and removes its simulated players and {@link Menu}s.</p>
+     */
+    private void endStep() {
+        Boxboy boxboy = Boxboy.get();
+        long renders = boxboy.getWatchdog().getRenderCount() - this.renderStart;
+        double seconds = (System.nanoTime() - this.wallStart) / 1e9;
+        boolean measured = Boxboy.allocatedBytes() >= 0;
+
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"players\":").append(this.steps[this.step]);
+        sb.append(",\"menus\":").append(this.menus.size());
+        sb.append(",\"ticks\":").append(this.ticksPerStep);
+        sb.append(",\"seconds\":").append(format(seconds));
+        sb.append(",\"clicks\":").append(this.clicks);
+        sb.append(",\"clicksPerSecond\":").append(format(seconds > 0 ? this.clicks / seconds : 0));
+        sb.append(",\"renders\":").append(renders);
+        sb.append(",\"clickNanos\":").append(percentiles(this.clickTimes));
+        sb.append(",\"tickNanos\":").append(percentiles(this.tickTimes));
+        if (measured) {
+            sb.append(",\"allocatedBytesPerTick\":").append(this.tickAllocations / this.ticksPerStep);
+            sb.append(",\"allocatedBytesPerClick\":").append(this.clicks == 0 ? 0 : this.clickAllocations / this.clicks);
+        }
+
+        this.results.add(sb.append("}").toString());
+        this.tearDown();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Removes the simulated players of the current step and disposes of its {@link Menu}s.</p>
+     */
+    private void tearDown() {
+        Boxboy boxboy = Boxboy.get();
+        this.viewers.forEach(viewer -> {
+            UUID uid = viewer.player.getUniqueId();
+            viewer.menu.removeViewer(uid);
+            Menu.viewerMap.remove(uid, viewer.menu);
+            boxboy.forgetViewer(uid);
+        });
+
+        this.menus.forEach(Menu::dispose);
+        this.viewers.clear();
+        this.menus.clear();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Ends this scenario and hands its report over.</p>
+     */
+    private void finish() {
+        this.finished = true;
+
+        String version = BoxboyPlugin.class.getAnnotation(Plugin.class).version();
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"version\":\"").append(version.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"");
+        sb.append(",\"java\":\"").append(System.getProperty("java.version")).append("\"");
+        sb.append(",\"headless\":").append(Boxboy.get().isHeadless());
+        sb.append(",\"kinds\":[");
+        int i = 0;
+        for (String kind : this.factories.keySet()) {
+            if (i++ > 0) sb.append(",");
+            sb.append("\"").append(kind).append("\"");
+        }
+
+        sb.append("],\"clickRate\":").append(format(this.clickRate));
+        sb.append(",\"seed\":").append(this.seed);
+        sb.append(",\"steps\":[").append(String.join(",", this.results)).append("]}");
+        this.report.accept(sb.toString());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Formats the percentiles of a histogram for the report.</p>
+     *
+     * @param histogram the histogram
+     * @return the formatted percentiles
+     */
+    private static String percentiles(LatencyHistogram histogram) {
+        return "{\"p50\":" + histogram.getPercentile(50) + ",\"p90\":" + histogram.getPercentile(90)
+            + ",\"p99\":" + histogram.getPercentile(99) + ",\"max\":" + histogram.getMax() + "}";
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Formats a decimal number for the report.</p>
+     *
+     * @param value the number
+     * @return the formatted number
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    // endregion
+
+    /**
+     * Adds a kind of {@link Menu} to simulate. Simulated players are spread evenly over all kinds.
+     *
+     * <p>If the kind is shared, all simulated players of that kind view the same Menu; otherwise, each of them views
+     * their own. Menus are created through the factory at the start of each step and disposed of at its end.</p>
+     *
+     * @param kind the name of the kind, used in the report
+     * @param factory the factory creating Menus of this kind
+     * @param shared whether or not simulated players share a Menu of this kind
+     * @return this LoadScenario
+     */
+    public LoadScenario menu(String kind, Supplier<Menu> factory, boolean shared) {
+        if (!kind.matches("[A-Za-z0-9_\\-]+"))
+            throw new IllegalArgumentException("Kind names may only contain letters, digits, dashes and underscores");
+
+        this.factories.put(kind, Objects.requireNonNull(factory));
+        this.shared.put(kind, shared);
+        return this;
+    }
+
+    /**
+     * Sets the number of clicks each simulated player makes per second.
+     *
+     * @param clicksPerSecond the number of clicks per second
+     * @return this LoadScenario
+     */
+    public LoadScenario clickRate(double clicksPerSecond) {
+        if (clicksPerSecond < 0) throw new IllegalArgumentException("Click rate cannot be negative");
+
+        this.clickRate = clicksPerSecond;
+        return this;
+    }
+
+    /**
+     * Sets the numbers of simulated players of each step, run in the given order.
+     *
+     * @param players the number of players of each step
+     * @return this LoadScenario
+     */
+    public LoadScenario steps(int... players) {
+        if (players.length == 0) throw new IllegalArgumentException("At least one step is required");
+        for (int count : players) if (count < 1) throw new IllegalArgumentException("Steps need at least one player");
+
+        this.steps = players.clone();
+        return this;
+    }
+
+    /**
+     * Sets the number of ticks measured per step.
+     *
+     * @param ticks the number of ticks
+     * @return this LoadScenario
+     */
+    public LoadScenario ticksPerStep(int ticks) {
+        if (ticks < 1) throw new IllegalArgumentException("Steps need to run for at least one tick");
+
+        this.ticksPerStep = ticks;
+        return this;
+    }
+
+    /**
+     * Sets the number of ticks run at the start of each step before measuring begins, giving the JIT and the server
+     * time to settle. Defaults to 20.
+     *
+     * @param ticks the number of ticks
+     * @return this LoadScenario
+     */
+    public LoadScenario warmupTicks(int ticks) {
+        if (ticks < 0) throw new IllegalArgumentException("Warm-up tick count cannot be negative");
+
+        this.warmupTicks = ticks;
+        return this;
+    }
+
+    /**
+     * Sets the seed choosing the clicked slots, such that runs of the scenario click the same slots.
+     *
+     * @param seed the seed
+     * @return this LoadScenario
+     */
+    public LoadScenario seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Starts running this scenario from the next tick.
+     *
+     * @param report receives the report once all steps have run
+     */
+    public void start(Consumer<String> report) {
+        if (this.report != null) throw new IllegalStateException("Scenario was already started");
+        if (this.factories.isEmpty()) throw new IllegalStateException("Scenario has no kinds of menu to simulate");
+
+        this.report = Objects.requireNonNull(report);
+        this.step = 0;
+        this.tick = 0;
+        this.random = new Random(this.seed);
+        this.viewers = new ArrayList<>();
+        this.menus = new ArrayList<>();
+        this.results = new ArrayList<>();
+        Boxboy.get().startSimulation(this::step);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Runs this scenario to completion on the given headless {@link Boxboy}, ticking it back to back.</p>
+     *
+     * @param boxboy the headless Boxboy
+     * @return the report
+     */
+    String runHeadless(Boxboy boxboy) {
+        if (!boxboy.isHeadless()) throw new IllegalArgumentException("Boxboy must be headless");
+
+        StringBuilder report = new StringBuilder();
+        this.start(report::append);
+        while (!this.finished) boxboy.tick();
+        return report.toString();
+    }
+
+    /**
+     * Stops this scenario, removing its simulated players and disposing of its {@link Menu}s. No report is produced.
+     */
+    public void stop() {
+        if (this.report == null || this.finished) return;
+
+        this.finished = true;
+        this.tearDown();
+    }
+
+    /**
+     * @return whether or not this scenario has finished or was stopped
+     */
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+}
@@ -24,25 +24,39 @@
 package com.github.xemiru.sponge.boxboy;
 
 import com.github.xemiru.sponge.boxboy.button.Button;
+import com.github.xemiru.sponge.boxboy.button.DynamicButton;
+import com.github.xemiru.sponge.boxboy.button.SlotButton;
+import com.github.xemiru.sponge.boxboy.button.ValueButton;
 import com.github.xemiru.sponge.boxboy.util.AnimatedMenuPattern;
 import com.github.xemiru.sponge.boxboy.util.Animation;
 import com.github.xemiru.sponge.boxboy.util.ClickContext;
 import com.github.xemiru.sponge.boxboy.util.OfferContext;
+import com.github.xemiru.sponge.boxboy.util.RepresentativeCache;
+import org.slf4j.Logger;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.item.ItemTypes;
 import org.spongepowered.api.item.inventory.Inventory;
 import org.spongepowered.api.item.inventory.ItemStack;
-import org.spongepowered.api.item.inventory.entity.PlayerInventory;
-import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.text.Text;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * A collection of {@link Button}s presented as a user interface through the use of {@link ItemStack}s within a given
@@ -50,8 +64,12 @@ import java.util.WeakHashMap;
  */
 public class Menu {
 
+    private static final AtomicLongFieldUpdater<Menu> CHANGES = AtomicLongFieldUpdater.newUpdater(Menu.class,
+        "changes");
+
     static Set<Menu> menus;
     static Map<UUID, Menu> viewerMap;
+    static Map<Button, Map<Menu, BitSet>> placements;
 
     static {
         // Use a weak set to automagically drop unused menu instances.
@@ -59,42 +77,166 @@ public class Menu {
         // disposed as long as their inventory is still in use in some form (e.g. being viewed by a player).
 
         Menu.menus = Collections.newSetFromMap(new WeakHashMap<>());
-        Menu.viewerMap = new HashMap<>();
-    }
-
-    static void updateInventory(int index, Button[] array, Inventory inv) {
-        int i = index;
-        int slotIndex = 0;
-        for (Inventory slot : inv.slots()) {
-            // ignore offhand slots for player inventories
-            if (inv instanceof PlayerInventory && slotIndex == 36) continue;
-
-            Button btn = array[i];
-            if (btn == null) {
-                if (slot.peek().filter(item -> item.getType() != ItemTypes.AIR).isPresent()) slot.clear();
-            } else {
-                ItemStack finalRep = btn.getAnimatedRepresentative()
-                    .map(Animation::getCurrentFrame)
-                    .orElse(btn.getRepresentative());
-
-                if (!slot.contains(finalRep)) {
-                    slot.clear();
-                    slot.set(finalRep);
-                }
-            }
+        Menu.viewerMap = new ConcurrentHashMap<>();
+
+        // Weak on both ends; an index entry should never be the reason a button or menu is kept around.
+        Menu.placements = new WeakHashMap<>();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Invalidates every slot of every {@link Menu} the given {@link Button} is currently set in.</p>
+     *
+     * @param button the Button to invalidate
+     */
+    static void invalidatePlacements(Button button) {
+        Map<Menu, BitSet> placed = Menu.placements.get(button);
+        if (placed != null) placed.forEach((menu, slots) -> slots.stream().forEach(menu::invalidate));
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Writes the representatives of the given {@link Button}s to the slots of the given {@link SlotLayout}.</p>
+     *
+     * <p>If provided, {@code rendered} holds the {@link RepresentativeCache interned} representatives last written to
+     * each slot of the layout. Slots whose current representative is that same instance are skipped without
+     * inspecting their contents.</p>
+     *
+     * @param index the index of the Button displayed in the first slot of the layout
+     * @param array the Buttons to display
+     * @param layout the slots to write to
+     * @param rendered the interned representatives last written to the layout, or null
+     * @param slots the indices of the Buttons to display, or null to display all of them
+     * @return the number of slots whose contents were changed
+     */
+    static int updateInventory(int index, Button[] array, SlotLayout layout, ItemStack[] rendered, BitSet slots) {
+        int written = 0;
+        if (slots == null) {
+            for (int i = 0; i < layout.size(); i++)
+                if (Menu.updateSlot(array[index + i], layout.get(i), rendered, i)) written++;
+        } else {
+            int end = index + layout.size();
+            for (int i = slots.nextSetBit(index); i >= 0 && i < end; i = slots.nextSetBit(i + 1))
+                if (Menu.updateSlot(array[i], layout.get(i - index), rendered, i - index)) written++;
+        }
+
+        return written;
+    }
 
-            slotIndex++;
-            i++;
+    /**
+     * Internal method.
+     *
+     * <p>Writes already resolved representatives to the slots of the given {@link SlotLayout}. Used to write the same
+     * contents to several inventories without resolving them again for each.</p>
+     *
+     * @param index the index of the Button displayed in the first slot of the layout
+     * @param reps the representatives to write, indexed by slot within the layout; null entries clear their slot
+     * @param layout the slots to write to
+     * @param slots the indices of the Buttons to display, or null to display all of them
+     * @return the number of slots whose contents were changed
+     */
+    static int writeInventory(int index, ItemStack[] reps, SlotLayout layout, BitSet slots) {
+        int written = 0;
+        if (slots == null) {
+            for (int i = 0; i < layout.size(); i++) if (Menu.writeSlot(reps[i], layout.get(i), null, i)) written++;
+        } else {
+            int end = index + layout.size();
+            for (int i = slots.nextSetBit(index); i >= 0 && i < end; i = slots.nextSetBit(i + 1))
+                if (Menu.writeSlot(reps[i - index], layout.get(i - index), null, i - index)) written++;
         }
+
+        return written;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the item currently representing the given {@link Button}, taking its animation into account.</p>
+     *
+     * @param btn the Button
+     * @return the current representative of the Button
+     */
+    static ItemStack representativeOf(Button btn) {
+        // Empty SlotButtons would build an empty stack on every render only to have their slot cleared.
+        if (btn instanceof SlotButton) return ((SlotButton) btn).getHeldItem().orElse(null);
+        return btn.getAnimatedRepresentative()
+            .map(Animation::getCurrentFrame)
+            .orElse(btn.getRepresentative());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Writes the representative of the given {@link Button} to the given slot.</p>
+     *
+     * @param btn the Button to display, or null to clear the slot
+     * @param slot the slot to write to
+     * @param rendered the interned representatives last written to the slot's layout, or null
+     * @param slotIndex the index of the slot within its layout
+     * @return if the slot's contents were changed
+     */
+    private static boolean updateSlot(Button btn, Inventory slot, ItemStack[] rendered, int slotIndex) {
+        return Menu.writeSlot(btn == null ? null : Menu.representativeOf(btn), slot, rendered, slotIndex);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Writes the given representative to the given slot. The slot's contents are checked first, unless the slot was
+     * last written with the same {@link RepresentativeCache interned} instance; interned ItemStacks are never modified,
+     * so the slot still holds it.</p>
+     *
+     * @param finalRep the representative to write, or null to clear the slot
+     * @param slot the slot to write to
+     * @param rendered the interned representatives last written to the slot's layout, or null
+     * @param slotIndex the index of the slot within its layout
+     * @return if the slot's contents were changed, and will thus be sent to its viewers
+     */
+    private static boolean writeSlot(ItemStack finalRep, Inventory slot, ItemStack[] rendered, int slotIndex) {
+        if (finalRep != null && rendered != null && rendered[slotIndex] == finalRep) return false;
+
+        boolean written;
+        if (finalRep == null) {
+            written = slot.peek().filter(item -> item.getType() != ItemTypes.AIR).isPresent();
+            if (written) slot.clear();
+        } else {
+            written = !slot.contains(finalRep);
+            if (written) {
+                slot.clear();
+                slot.set(finalRep);
+            }
+        }
+
+        if (rendered != null)
+            rendered[slotIndex] = finalRep != null && RepresentativeCache.isInterned(finalRep) ? finalRep : null;
+        return written;
     }
 
     private Set<UUID> viewers;
-    private boolean invalidated;
+    private volatile boolean invalidated;
+    private volatile long changes;
+    private BitSet invalidatedSlots;
     private Inventory inventory;
+    private SlotLayout layout;
+    private Queue<Consumer<Menu>> mutations;
+    private ItemStack[] rendered;
+    private long[] versions;
+    private boolean disposed;
+    private Map<UUID, Overlay> overlays;
+    private String name;
+    private List<Long> clickStamps;
     Button[] buttons;
+    InventoryPool.Key poolKey;
+    InventoryPool.Entry poolEntry;
+    volatile long analyticsSymbol;
 
     Menu() {
         Menu.menus.add(this);
+        this.analyticsSymbol = 0;
+        MenuAnalytics analytics = Boxboy.get().getAnalytics().orElse(null);
+        if (analytics != null) analytics.symbolOf(this);
     }
 
     // region Internal methods
@@ -105,12 +247,32 @@ public class Menu {
      * <p>Initializes this {@link Menu} with the provided {@link Inventory}.</p>
      *
      * @param inv the Inventory to use
+     * @param layout the layout of the Inventory
      */
-    void initialize(Inventory inv) {
-        this.viewers = new HashSet<>();
+    void initialize(Inventory inv, SlotLayout layout) {
+        this.viewers = ConcurrentHashMap.newKeySet();
         this.invalidated = false;
+        this.invalidatedSlots = new BitSet();
         this.inventory = inv;
-        this.buttons = new Button[inv.capacity()];
+        this.layout = layout;
+        this.mutations = new ConcurrentLinkedQueue<>();
+        this.rendered = new ItemStack[layout.size()];
+        this.buttons = new Button[this.getButtonCapacity(inv)];
+        this.versions = new long[this.buttons.length];
+        this.overlays = new HashMap<>();
+        this.clickStamps = new ArrayList<>();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns how many {@link Button}s this {@link Menu} can hold when using the provided {@link Inventory}.</p>
+     *
+     * @param inv the Inventory to be used
+     * @return the Button capacity of this Menu
+     */
+    int getButtonCapacity(Inventory inv) {
+        return inv.capacity();
     }
 
     /**
@@ -121,7 +283,18 @@ public class Menu {
      * @param player the Player to add
      */
     void addViewer(Player player) {
-        this.viewers.add(player.getUniqueId());
+        this.addViewer(player.getUniqueId());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Adds the viewer with the provided {@link UUID} to the list of this {@link Menu}'s viewers.</p>
+     *
+     * @param uid the UUID of the viewer to add
+     */
+    void addViewer(UUID uid) {
+        this.viewers.add(uid);
     }
 
     /**
@@ -132,7 +305,281 @@ public class Menu {
      * @param player the Player to remove
      */
     void removeViewer(Player player) {
-        this.viewers.remove(player.getUniqueId());
+        this.removeViewer(player.getUniqueId());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Removes the viewer with the provided {@link UUID} from the list of this {@link Menu}'s viewers.</p>
+     *
+     * @param uid the UUID of the viewer to remove
+     */
+    void removeViewer(UUID uid) {
+        this.viewers.remove(uid);
+        this.resendOverlays(uid);
+
+        // Changes no one is left to see won't be rendered any time soon.
+        if (this.viewers.isEmpty()) this.clickStamps.clear();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Applies all mutations queued through {@link #submit(Consumer)} to this {@link Menu}, in the order they were
+     * submitted. Must be called on the main thread.</p>
+     *
+     * <p>A mutation throwing an exception is logged and skipped; the ones after it are still applied.</p>
+     *
+     * @param logger the logger to report failed mutations to
+     */
+    void applyMutations(Logger logger) {
+        Consumer<Menu> mutation;
+        while ((mutation = this.mutations.poll()) != null) {
+            try {
+                mutation.accept(this);
+            } catch (RuntimeException e) {
+                logger.error("Mutation submitted to menu {} failed", Watchdog.describe(this), e);
+            }
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Updates the {@link Inventory} used by this {@link Menu}, limiting the update to the invalidated slots if only
+     * specific slots were invalidated.</p>
+     *
+     * @return the number of shared slots whose contents were changed, and will thus be sent to every viewer
+     */
+    int render() {
+        // No flags set means we were invalidated without having our slots checked.
+        if (this.invalidated || this.invalidatedSlots.isEmpty()) return this.timedUpdate(null);
+        return this.timedUpdate((BitSet) this.invalidatedSlots.clone());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Calls {@link #updateInventory(BitSet)} under the watch of the {@link Watchdog}.</p>
+     *
+     * @param slots the indices of the slots to update, or null to update all slots
+     * @return the number of shared slots whose contents were changed
+     */
+    private int timedUpdate(BitSet slots) {
+        Watchdog watchdog = Boxboy.get().getWatchdog();
+        Object event = FlightEvent.RENDER.begin();
+        int written = 0;
+        long start = watchdog.begin(true);
+        try {
+            written = this.updateInventory(slots);
+        } finally {
+            watchdog.endRender(this, slots == null ? this.buttons.length : slots.cardinality(), start);
+            if (event != null) FlightEvent.RENDER.commit(event, Watchdog.describe(this), written);
+        }
+
+        if (!this.clickStamps.isEmpty()) {
+            long now = System.nanoTime();
+            Boxboy boxboy = Boxboy.get();
+            this.clickStamps.forEach(stamp -> boxboy.recordClickLatency(this, now - stamp));
+            this.clickStamps.clear();
+        }
+
+        return written;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the number of times this {@link Menu} has been invalidated, as a whole or in part. Compared before
+     * and after handling a click to tell whether the click changed anything.</p>
+     *
+     * @return the number of invalidations so far
+     */
+    long getChangeCount() {
+        return this.changes;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Notes that a click received at the given time was handled. If the click changed this {@link Menu} -- by
+     * invalidating it, or by changing the version of the clicked {@link DynamicButton} -- the time taken until the
+     * change is written to its inventory is recorded. Clicks changing nothing, even on a Menu invalidated by something
+     * else, aren't.</p>
+     *
+     * @param stamp the time the click was received at, as given by {@link System#nanoTime()}
+     * @param changes the change count of this Menu before the click was handled
+     * @param slot the slot clicked, or -1 if unknown
+     * @see #getChangeCount()
+     */
+    void stampClick(long stamp, long changes, int slot) {
+        boolean dynamic = slot >= 0 && slot < this.buttons.length && this.isChanged(slot, false, false);
+        if (this.changes != changes || dynamic) this.clickStamps.add(stamp);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Updates the given slots of the {@link Inventory} used by this {@link Menu}.</p>
+     *
+     * <p>The invalidation state is reset upon calling this method.</p>
+     *
+     * @param slots the indices of the slots to update, or null to update all slots
+     * @return the number of shared slots whose contents were changed
+     */
+    int updateInventory(BitSet slots) {
+        // Record versions before rendering; a version changing mid-render will then cause another update.
+        for (int i = 0; i < this.buttons.length; i++) {
+            if (this.buttons[i] instanceof DynamicButton && (slots == null || slots.get(i)))
+                this.versions[i] = ((DynamicButton) this.buttons[i]).getVersion();
+        }
+
+        int written = Menu.updateInventory(0, this.buttons, this.layout, this.rendered, slots);
+        this.invalidated = false;
+        this.invalidatedSlots.clear();
+
+        // Rewritten slots get sent to every viewer, covering their overlays; those have to be sent again.
+        int top = this.layout.size();
+        this.overlays.values().forEach(overlay -> overlay.sent.keySet()
+            .removeIf(index -> index < top && (slots == null || slots.get(index))));
+        return written;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Sends the overlays of this {@link Menu}'s viewers which haven't been sent yet. Overlays already sent are only
+     * checked for changes for the viewers accepted by {@code frames}.</p>
+     *
+     * <p>Overlays of slots rewritten in the same tick are sent on the next tick, once the shared contents have made it
+     * to the client.</p>
+     *
+     * @param frames whether or not the overlays of the viewer with a given UUID should be checked for changes
+     */
+    void updateOverlays(Predicate<UUID> frames) {
+        if (this.overlays.isEmpty()) return;
+
+        Boxboy boxboy = Boxboy.get();
+        this.overlays.forEach((uid, overlay) -> {
+            if (!this.viewers.contains(uid)) return;
+
+            boolean changes = frames.test(uid);
+            boxboy.getPlayer(uid).ifPresent(player -> overlay.buttons.forEach((index, button) -> {
+                ItemStack last = overlay.sent.get(index);
+                if (last != null && !changes) return;
+
+                ItemStack rep = Menu.representativeOf(button);
+                if (rep == null) rep = ItemStack.empty();
+                if (last != null && (rep == last || rep.equalTo(last))) return;
+
+                this.writeOverlay(player, index, rep);
+                overlay.sent.put(index, rep);
+                boxboy.chargeViewer(uid, 1);
+            }));
+        });
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Forgets what was last written to the given slot, such that its contents are checked on its next update. Used
+     * once the slot's contents were changed outside of Boxboy, e.g. by an accepted offer.</p>
+     *
+     * @param slot the index of the slot
+     */
+    void forgetRendered(int slot) {
+        if (slot >= 0 && slot < this.rendered.length) this.rendered[slot] = null;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Marks the overlay of the given {@link Player} to be sent again in full.</p>
+     *
+     * @param player the Player
+     */
+    void resendOverlays(Player player) {
+        this.resendOverlays(player.getUniqueId());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Marks the overlay of the viewer with the given {@link UUID} to be sent again in full.</p>
+     *
+     * @param uid the UUID of the viewer
+     */
+    void resendOverlays(UUID uid) {
+        Overlay overlay = this.overlays.get(uid);
+        if (overlay != null) overlay.sent.clear();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the indices of the slots covered by the overlay of the given {@link Player}.</p>
+     *
+     * @param player the Player
+     * @return the indices of the overlaid slots, or null if there are none
+     */
+    BitSet getOverlaidSlots(Player player) {
+        Overlay overlay = this.overlays.get(player.getUniqueId());
+        return overlay == null || overlay.slots.isEmpty() ? null : overlay.slots;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Shows the given item in a slot of this {@link Menu} to a single viewing {@link Player}.</p>
+     *
+     * @param player the Player to show the item to
+     * @param index the index of the slot
+     * @param rep the item to show
+     */
+    void writeOverlay(Player player, int index, ItemStack rep) {
+        Boxboy.sendSlot(player, index, rep);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Removes every {@link Button} from this {@link Menu} and from the placement index, without invalidating or
+     * recording anything. Used to detach a released Menu from its Buttons.</p>
+     */
+    void clearButtons() {
+        for (int i = 0; i < this.buttons.length; i++) if (this.buttons[i] != null) this.place(i, null);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Places a {@link Button} at the given index, moving it within the placement index.</p>
+     *
+     * @param index the index to set the Button at
+     * @param button the Button to set, or null to clear
+     */
+    private void place(int index, Button button) {
+        Button old = this.buttons[index];
+        if (old != null) {
+            Map<Menu, BitSet> placed = Menu.placements.get(old);
+            BitSet slots = placed == null ? null : placed.get(this);
+            if (slots != null) {
+                slots.clear(index);
+                if (slots.isEmpty()) placed.remove(this);
+                if (placed.isEmpty()) Menu.placements.remove(old);
+            }
+        }
+
+        if (button != null) {
+            Menu.placements.computeIfAbsent(button, key -> new WeakHashMap<>())
+                .computeIfAbsent(this, key -> new BitSet()).set(index);
+            if (button instanceof ValueButton) ((ValueButton<?>) button).getValue().bind(button);
+            MenuAnalytics analytics = Boxboy.get().getAnalytics().orElse(null);
+            if (analytics != null) analytics.symbol(button.getClass());
+        }
+
+        this.buttons[index] = button;
     }
 
     // endregion
@@ -141,37 +588,108 @@ public class Menu {
      * Returns whether or not this {@link Menu} is in an invalidated state -- i.e., the menu is waiting to have its
      * representative inventory updated in the next tick to reflect changes made in the current.
      *
-     * <p>If this Menu contains any {@link Button}s that are animated, this method will return based on the animation
-     * given by {@link Button#getAnimatedRepresentative()}. If an animation is present, the Menu is invalidated if
-     * {@link Animation#isNewFrame()} returns true. If no animation is present, the Menu is invalidated if
-     * {@link Button#isAnimated()} returns true. Otherwise, the Menu's own invalidation flag (which can be forced
-     * through {@link Menu#invalidate()}) is used.</p>
+     * <p>If this Menu contains any {@link DynamicButton}s, the Menu is invalidated if the version of any of them
+     * differs from the one last displayed. If this Menu contains any other {@link Button}s that are animated, this
+     * method will return based on the animation given by {@link Button#getAnimatedRepresentative()}. If an animation
+     * is present, the Menu is invalidated if {@link Animation#isNewFrame()} returns true. If no animation is present,
+     * the Menu is invalidated if {@link Button#isAnimated()} returns true. Otherwise, the Menu's own invalidation flags
+     * (which can be forced through {@link Menu#invalidate()} or {@link Menu#invalidate(int)}) are used.</p>
      *
      * @return if this Menu is in an invalidated state
      */
     public boolean isInvalidated() {
         // check invalidation state first to not have to iterate
-        if(this.invalidated) return true;
+        if (this.invalidated || !this.invalidatedSlots.isEmpty()) return true;
 
-        // check for buttons waiting to change frame
-        for (Button button : this.buttons) {
-            if (button == null) continue;
-            if (button.getAnimatedRepresentative()
-                .map(Animation::isNewFrame)
-                // accomodate for previous implementations of animations depending on getRepresentative return value
-                .orElse(button.isAnimated())) return true;
+        for (int i = 0; i < this.buttons.length; i++) {
+            if (this.isChanged(i, true, true)) return true;
         }
 
         return false;
     }
 
+    /**
+     * Internal method.
+     *
+     * <p>Invalidates the slots of all {@link Button}s whose representatives have changed since they were last
+     * displayed, optionally ignoring changes caused by animations, and returns whether or not this {@link Menu} is in
+     * an invalidated state.</p>
+     *
+     * @param animations whether or not to check for new animation frames
+     * @param decorative whether or not to check for new animation frames of decorative Buttons
+     * @return if this Menu is in an invalidated state
+     * @see #isInvalidated()
+     */
+    boolean checkInvalidated(boolean animations, boolean decorative) {
+        for (int i = 0; i < this.buttons.length; i++) {
+            if (!this.invalidatedSlots.get(i) && this.isChanged(i, animations, decorative))
+                this.invalidatedSlots.set(i);
+        }
+
+        return this.invalidated || !this.invalidatedSlots.isEmpty();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns whether or not the representative of the {@link Button} at the given index has changed since it was
+     * last displayed.</p>
+     *
+     * @param index the index of the Button
+     * @param animations whether or not to check for new animation frames
+     * @param decorative whether or not to check for new animation frames of decorative Buttons
+     * @return if the Button's representative has changed
+     */
+    private boolean isChanged(int index, boolean animations, boolean decorative) {
+        Button button = this.buttons[index];
+        if (button == null) return false;
+
+        boolean dynamic = button instanceof DynamicButton;
+        if (dynamic && ((DynamicButton) button).getVersion() != this.versions[index]) return true;
+        if (!animations || (!decorative && button.isDecorative())) return false;
+
+        // check for buttons waiting to change frame
+        Optional<Animation<ItemStack>> animation = button.getAnimatedRepresentative();
+        if (animation.isPresent()) return animation.get().isNewFrame();
+
+        // accomodate for previous implementations of animations depending on getRepresentative return value
+        return !dynamic && button.isAnimated();
+    }
+
     /**
      * Invalidates this {@link Menu}.
      *
+     * <p>This method is safe to call from any thread.</p>
+     *
      * @see #isInvalidated()
      */
     public void invalidate() {
+        Menu.CHANGES.incrementAndGet(this);
+        if (this.invalidated) return;
         this.invalidated = true;
+
+        WorkloadRecorder recorder = Boxboy.get().getRecorder();
+        if (recorder != null) recorder.invalidate(this, -1);
+    }
+
+    /**
+     * Invalidates a single slot of this {@link Menu}.
+     *
+     * <p>Unlike {@link #invalidate()}, only the given slot will be updated in the next tick. This method must be
+     * called on the main thread.</p>
+     *
+     * @param index the index of the slot to invalidate
+     * @see #isInvalidated()
+     */
+    public void invalidate(int index) {
+        if (index < 0 || index >= this.getCapacity())
+            throw new IndexOutOfBoundsException("Slot index out of bounds of menu capacity");
+
+        this.invalidatedSlots.set(index);
+        Menu.CHANGES.incrementAndGet(this);
+
+        WorkloadRecorder recorder = Boxboy.get().getRecorder();
+        if (recorder != null) recorder.invalidate(this, index);
     }
 
     /**
@@ -202,12 +720,152 @@ public class Menu {
      * <p>Menu contents are updated through invalidation flags checked by a recurring scheduler task; this method is
      * thus safe to call during inventory events.</p>
      *
+     * <p>This method must be called on the main thread. Asynchronous tasks should use
+     * {@link #submitButton(int, Button)} instead.</p>
+     *
      * @param index the index to set the Button at
      * @param button the Button to set, or null to clear
      */
     public void setButton(int index, Button button) {
-        this.buttons[index] = button;
-        this.invalidated = true;
+        this.place(index, button);
+        this.invalidatedSlots.set(index);
+        Menu.CHANGES.incrementAndGet(this);
+
+        WorkloadRecorder recorder = Boxboy.get().getRecorder();
+        if (recorder != null) recorder.button(this, index, button);
+    }
+
+    /**
+     * Queues a mutation to be applied to this {@link Menu} on the main thread.
+     *
+     * <p>This method is safe to call from any thread. Queued mutations are applied in submission order by the
+     * recurring menu task before the Menu is next rendered, so all changes made by a single mutation are always
+     * displayed together. A mutation that throws an exception is logged, without keeping the others from being
+     * applied.</p>
+     *
+     * @param mutation the mutation to apply
+     */
+    public void submit(Consumer<Menu> mutation) {
+        Objects.requireNonNull(mutation);
+        this.mutations.add(mutation);
+    }
+
+    /**
+     * Queues a {@link Button} to be set in this menu on the main thread, or cleared at the given index if null.
+     *
+     * <p>This is the thread-safe counterpart to {@link #setButton(int, Button)}; see {@link #submit(Consumer)}.</p>
+     *
+     * @param index the index to set the Button at
+     * @param button the Button to set, or null to clear
+     */
+    public void submitButton(int index, Button button) {
+        if (index < 0 || index >= this.getCapacity())
+            throw new IndexOutOfBoundsException("Button index out of bounds of menu capacity");
+
+        this.submit(menu -> menu.setButton(index, button));
+    }
+
+    /**
+     * Returns the {@link Button} seen by the given {@link Player} at the given index?
+     *
+     * <p>This is the Button set in the Player's overlay if there is one, or the Button set at the index otherwise.</p>
+     *
+     * @param viewer the Player to query for
+     * @param index the index to query
+     * @return the Button seen by the Player at the given index?
+     */
+    public Optional<Button> getButton(Player viewer, int index) {
+        Overlay overlay = this.overlays.get(viewer.getUniqueId());
+        Button button = overlay == null ? null : overlay.buttons.get(index);
+        return button == null ? this.getButton(index) : Optional.of(button);
+    }
+
+    /**
+     * Returns the {@link Button} set at the given index in the given {@link Player}'s overlay?
+     *
+     * @param viewer the Player to query for
+     * @param index the index to query
+     * @return the Button overlaid at the given index?
+     */
+    public Optional<Button> getOverlay(Player viewer, int index) {
+        Overlay overlay = this.overlays.get(viewer.getUniqueId());
+        return overlay == null ? Optional.empty() : Optional.ofNullable(overlay.buttons.get(index));
+    }
+
+    /**
+     * Sets a {@link Button} shown only to the given {@link Player} in place of the one set at the given index, or
+     * clears it if null.
+     *
+     * <p>Overlays let one Menu be shared by many viewers while still showing each of them personal contents, such as
+     * their balance. Clicks on an overlaid slot go to the overlaid Button. Overlays can be set before the Player opens
+     * the Menu, and are kept until cleared or the Player leaves the server.</p>
+     *
+     * <p>Overlaid Buttons are checked for changes alongside animations, so animated, dynamic and value Buttons keep
+     * themselves up to date.</p>
+     *
+     * <p>This method must be called on the main thread. Asynchronous tasks should use {@link #submit(Consumer)}
+     * instead.</p>
+     *
+     * @param viewer the Player to show the Button to
+     * @param index the index to set the Button at
+     * @param button the Button to set, or null to clear
+     * @throws UnsupportedOperationException if overlays cannot be shown on this server
+     * @see Boxboy#isOverlayAvailable()
+     */
+    public void setOverlay(Player viewer, int index, Button button) {
+        Objects.requireNonNull(viewer);
+        if (index < 0 || index >= this.buttons.length)
+            throw new IndexOutOfBoundsException("Button index out of bounds of menu capacity");
+        if (button != null && !Boxboy.get().isOverlayAvailable())
+            throw new UnsupportedOperationException("Boxboy's overlay reflection failed! Overlays can't be shown..");
+
+        UUID uid = viewer.getUniqueId();
+        Overlay overlay = this.overlays.get(uid);
+        if (button == null) {
+            if (overlay == null || overlay.buttons.remove(index) == null) return;
+
+            overlay.sent.remove(index);
+            overlay.slots.clear(index);
+            if (overlay.buttons.isEmpty()) this.overlays.remove(uid);
+            this.restoreSlot(viewer, index);
+        } else {
+            if (overlay == null) this.overlays.put(uid, overlay = new Overlay());
+            MenuAnalytics analytics = Boxboy.get().getAnalytics().orElse(null);
+            if (analytics != null) analytics.symbol(button.getClass());
+
+            overlay.buttons.put(index, button);
+            overlay.sent.remove(index);
+            overlay.slots.set(index);
+        }
+    }
+
+    /**
+     * Clears all {@link Button}s set in the given {@link Player}'s overlay.
+     *
+     * <p>This method must be called on the main thread.</p>
+     *
+     * @param viewer the Player to clear the overlay of
+     */
+    public void clearOverlay(Player viewer) {
+        Overlay overlay = this.overlays.remove(viewer.getUniqueId());
+        if (overlay == null) return;
+
+        for (int i = overlay.slots.nextSetBit(0); i >= 0; i = overlay.slots.nextSetBit(i + 1))
+            this.restoreSlot(viewer, i);
+    }
+
+    /**
+     * Shows a {@link Player} the shared contents of a slot again after its overlay was cleared.
+     *
+     * @param viewer the Player
+     * @param index the index of the slot
+     */
+    private void restoreSlot(Player viewer, int index) {
+        if (!this.isViewingMenu(viewer)) return;
+
+        Button button = this.buttons[index];
+        ItemStack rep = button == null ? null : Menu.representativeOf(button);
+        this.writeOverlay(viewer, index, rep == null ? ItemStack.empty() : rep);
     }
 
     /**
@@ -223,6 +881,8 @@ public class Menu {
     /**
      * Returns the set of all {@link UUID}s belonging to {@link Player}s currently viewing this {@link Menu}.
      *
+     * <p>The returned set is live and safe to read from any thread.</p>
+     *
      * @return a set of UUIDs belonging to Players currently viewing this Menu
      */
     public Set<UUID> getViewers() {
@@ -237,14 +897,34 @@ public class Menu {
      * {@link Button#onClick(ClickContext)} or {@link Button#offer(OfferContext)}), it should be performed on the next
      * possible tick through the scheduler.</p>
      *
+     * <p>Menus are opened in a batch by the recurring menu task on the next tick. Should more than one Menu be opened
+     * for the same Player within a single tick, only the last one is shown.</p>
+     *
      * @param player the Player to show this Menu to
      */
     public void open(Player player) {
+        if (this.disposed) throw new IllegalStateException("Cannot open a disposed menu");
+
         // Call on the next possible tick in case we were called inside of an inventory event response
+        Boxboy.get().queueOpen(player, this);
+    }
 
-        Task.builder()
-            .execute(() -> player.openInventory(this.inventory))
-            .submit(this.inventory.getPlugin().getInstance().get());
+    /**
+     * Switches the given {@link Player} from this {@link Menu} over to another.
+     *
+     * <p>This behaves like calling {@link #open(Player)} on the target Menu, but is cheaper when navigating between
+     * Menus: a Player switching between two {@link ExtendedMenu}s keeps their inventory stored away instead of having
+     * it restored and stored again, and the target Menu is brought up to date before being shown. If the Player isn't
+     * currently viewing this Menu, the target Menu is simply opened.</p>
+     *
+     * @param player the Player to switch
+     * @param target the Menu to switch to
+     */
+    public void switchTo(Player player, Menu target) {
+        Objects.requireNonNull(target);
+        if (target.disposed) throw new IllegalStateException("Cannot open a disposed menu");
+        if (this.isViewingMenu(player)) Boxboy.get().queueSwitch(player, target);
+        else target.open(player);
     }
 
     /**
@@ -257,13 +937,65 @@ public class Menu {
     }
 
     /**
-     * Updates the {@link Inventory} used by this {@link Menu} to display its buttons.
+     * Updates the {@link Inventory} used by this {@link Menu} to display its buttons. The contents of every slot are
+     * checked, repairing any changed outside of Boxboy.
      *
      * <p>The invalidation state is reset upon calling this method.</p>
      */
     public void updateInventory() {
-        Menu.updateInventory(0, this.buttons, this.inventory);
-        this.invalidated = false;
+        Arrays.fill(this.rendered, null);
+        this.timedUpdate(null);
+    }
+
+    /**
+     * Returns the name of this {@link Menu}?
+     *
+     * @return the name of this Menu?
+     * @see #setName(String)
+     */
+    public Optional<String> getName() {
+        return Optional.ofNullable(this.name);
+    }
+
+    /**
+     * Sets the name of this {@link Menu}, or clears it if null.
+     *
+     * <p>Names are never shown to players; they identify the Menu in diagnostics, such as reports made by the
+     * {@link Watchdog}.</p>
+     *
+     * @param name the name of this Menu
+     */
+    public void setName(String name) {
+        this.name = name;
+        this.analyticsSymbol = 0;
+        MenuAnalytics analytics = Boxboy.get().getAnalytics().orElse(null);
+        if (analytics != null) analytics.symbolOf(this);
+    }
+
+    /**
+     * Returns whether or not this {@link Menu} has been disposed of through {@link #dispose()}.
+     *
+     * @return if this Menu has been disposed of
+     */
+    public boolean isDisposed() {
+        return this.disposed;
+    }
+
+    /**
+     * Disposes of this {@link Menu}, returning its {@link Inventory} to be reused by new Menus.
+     *
+     * <p>A disposed Menu can no longer be opened. If the Menu is still being viewed, its Inventory is returned once the
+     * last viewer closes it. Menus that are not disposed of are still dropped normally once no longer used, but
+     * their Inventory is not reused.</p>
+     *
+     * @see Boxboy#prepareMenus(int, Text, int)
+     */
+    public void dispose() {
+        if (this.disposed) return;
+
+        this.disposed = true;
+        this.clearAnimations();
+        if (this.viewers.isEmpty()) Boxboy.get().releaseMenu(this);
     }
 
     /**
@@ -273,4 +1005,21 @@ public class Menu {
         AnimatedMenuPattern.clearAnimation(this);
     }
 
+    /**
+     * The {@link Button}s shown to a single viewer of a {@link Menu} in place of the shared ones.
+     */
+    private static class Overlay {
+
+        private Map<Integer, Button> buttons;
+        private Map<Integer, ItemStack> sent;
+        private BitSet slots;
+
+        private Overlay() {
+            this.buttons = new HashMap<>();
+            this.sent = new HashMap<>();
+            this.slots = new BitSet();
+        }
+
+    }
+
 }
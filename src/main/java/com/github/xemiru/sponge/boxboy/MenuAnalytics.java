@@ -0,0 +1,481 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.Button;
+import com.github.xemiru.sponge.boxboy.util.ClickType;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams {@link Menu} analytics events to rolling files on disk.
+ *
+ * <p>Opens, closes and clicks are published by {@link Boxboy} as they happen, along with marks placed by plugins
+ * through {@link #mark(Player, Menu, String)} -- for instance at each step of a purchase flow, such that flows closed
+ * before their last step can be told apart. Publishing an event only copies its fields into a preallocated ring
+ * buffer; it never blocks, and never allocates once the names involved are known. If the buffer is full, the event
+ * is dropped and counted instead.</p>
+ *
+ * <p>Names are interned as numbered symbols, in a table of their own for each run of analytics. Menus and Button
+ * classes are interned when they're created, renamed or set while analytics run, and otherwise the first time they
+ * show up in an event; labels of marks the first time they're used. The number of symbols is bounded; once
+ * {@value #MAX_SYMBOLS} names are known, new ones are all written as {@code (other)}. Menus named after each player
+ * thus can't grow the table forever, but do lose their names past that point until analytics are started again.</p>
+ *
+ * <p>A background thread drains the buffer in batches and writes each event as a line of tab-separated values: the
+ * time in epoch milliseconds, the event, the player's {@link UUID}, the Menu -- its name, or the simple name of its
+ * class if it has none -- then the slot and the {@link Button} class for clicks, and a detail: the
+ * {@link ClickType} of clicks, the label of marks, and the time in milliseconds the player spent in the Menu for
+ * closes. Files are named after the time analytics started and roll over once they reach their maximum size; the
+ * oldest files are deleted once there are more than the maximum number of them.</p>
+ *
+ * <p>Events are published on the main thread; {@link #mark(Player, Menu, String)} must be called on it as well.</p>
+ */
+public class MenuAnalytics {
+
+    static final byte OPEN = 0, CLOSE = 1, CLICK = 2, MARK = 3;
+    private static final String[] EVENTS = { "open", "close", "click", "mark" };
+    private static final ClickType[] CLICK_TYPES = ClickType.values();
+    private static final String HEADER = "time\tevent\tplayer\tmenu\tslot\tbutton\tdetail\n";
+
+    static final int MAX_SYMBOLS = 4096;
+    private static final int OTHER = 1;
+    private static final AtomicInteger generations = new AtomicInteger();
+
+    // symbols name Menus, Button classes and marks; Menus cache theirs along with the generation they belong to
+    private final int generation;
+    private final Map<Object, Integer> symbols;
+    private final Map<Integer, String> symbolNames;
+
+    // ring buffer, one array per field
+    private final int mask;
+    private final long[] times;
+    private final byte[] events;
+    private final long[] playersMost;
+    private final long[] playersLeast;
+    private final int[] menus;
+    private final int[] slots;
+    private final int[] details;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private volatile long dropped; // only written by the main thread
+
+    private final Path directory;
+    private final long started;
+    private volatile long maxFileSize;
+    private volatile int maxFiles;
+    private volatile boolean running;
+    private volatile long written;
+    private volatile IOException error;
+    private Thread thread;
+
+    // writer thread state
+    private Writer out;
+    private long fileSize;
+    private int fileIndex;
+    private Deque<Path> files;
+    private Map<UUID, Long> opened;
+
+    MenuAnalytics(Path directory, int capacity) throws IOException {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two");
+
+        this.generation = MenuAnalytics.generations.incrementAndGet();
+        this.symbols = new ConcurrentHashMap<>();
+        this.symbolNames = new ConcurrentHashMap<>();
+        this.symbolNames.put(MenuAnalytics.OTHER, "(other)");
+
+        this.mask = capacity - 1;
+        this.times = new long[capacity];
+        this.events = new byte[capacity];
+        this.playersMost = new long[capacity];
+        this.playersLeast = new long[capacity];
+        this.menus = new int[capacity];
+        this.slots = new int[capacity];
+        this.details = new int[capacity];
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.dropped = 0;
+
+        this.directory = Files.createDirectories(directory);
+        this.started = System.currentTimeMillis();
+        this.maxFileSize = 16 * 1024 * 1024;
+        this.maxFiles = 8;
+        this.written = 0;
+        this.error = null;
+        this.fileIndex = 0;
+        this.files = new ArrayDeque<>();
+        this.opened = new HashMap<>();
+        this.roll();
+
+        this.running = true;
+        this.thread = new Thread(this::run, "Boxboy Analytics Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the symbol standing for the given key, assigning one if the key hasn't been seen yet and there's room
+     * for it.</p>
+     *
+     * @param key a String, or a Class named by its name
+     * @return the symbol of the key
+     */
+    int symbol(Object key) {
+        Integer symbol = this.symbols.get(key);
+        return symbol != null ? symbol : this.intern(key);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Assigns a symbol to the given key, unless all symbols are taken.</p>
+     *
+     * @param key a String, or a Class named by its name
+     * @return the symbol of the key
+     */
+    private synchronized int intern(Object key) {
+        Integer symbol = this.symbols.get(key);
+        if (symbol != null) return symbol;
+        if (this.symbols.size() >= MenuAnalytics.MAX_SYMBOLS) return MenuAnalytics.OTHER;
+
+        symbol = this.symbols.size() + 2;
+        this.symbolNames.put(symbol, key instanceof Class ? ((Class<?>) key).getName() : key.toString());
+        this.symbols.put(key, symbol);
+        return symbol;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the symbol naming the given {@link Menu}, interning its name unless the Menu already holds its symbol
+     * from this run of analytics.</p>
+     *
+     * @param menu the Menu
+     * @return the symbol of the Menu
+     */
+    int symbolOf(Menu menu) {
+        long cached = menu.analyticsSymbol;
+        if ((int) (cached >>> 32) == this.generation) return (int) cached;
+
+        int symbol = this.symbol(menu.getName().orElse(menu.getClass().getSimpleName()));
+        menu.analyticsSymbol = (long) this.generation << 32 | symbol;
+        return symbol;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Publishes an event to the ring buffer, or counts it as dropped if the buffer is full.</p>
+     *
+     * @param event the type of the event
+     * @param player the Player causing the event
+     * @param menu the Menu the event happened in
+     * @param slot the slot involved, or -1
+     * @param detail the detail of the event
+     */
+    private void publish(byte event, Player player, Menu menu, int slot, int detail) {
+        long seq = this.head.get();
+        if (seq - this.tail.get() > this.mask) {
+            this.dropped++;
+            return;
+        }
+
+        int i = (int) seq & this.mask;
+        UUID uid = player.getUniqueId();
+        this.times[i] = System.currentTimeMillis();
+        this.events[i] = event;
+        this.playersMost[i] = uid.getMostSignificantBits();
+        this.playersLeast[i] = uid.getLeastSignificantBits();
+        this.menus[i] = this.symbolOf(menu);
+        this.slots[i] = slot;
+        this.details[i] = detail;
+        this.head.lazySet(seq + 1); // publishes the fields above to the writer thread
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Publishes the opening of a {@link Menu}.</p>
+     *
+     * @param menu the Menu
+     * @param viewer the Player opening the Menu
+     */
+    void open(Menu menu, Player viewer) {
+        this.publish(MenuAnalytics.OPEN, viewer, menu, -1, 0);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Publishes the closing of a {@link Menu}.</p>
+     *
+     * @param menu the Menu
+     * @param viewer the Player closing the Menu
+     */
+    void close(Menu menu, Player viewer) {
+        this.publish(MenuAnalytics.CLOSE, viewer, menu, -1, 0);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Publishes a click on a {@link Menu}.</p>
+     *
+     * @param menu the Menu
+     * @param clicker the Player clicking the Menu
+     * @param slot the clicked slot
+     * @param button the clicked Button, or null if the slot was empty
+     * @param type the type of the click
+     */
+    void click(Menu menu, Player clicker, int slot, Button button, ClickType type) {
+        int symbol = button == null ? 0 : this.symbol(button.getClass());
+        this.publish(MenuAnalytics.CLICK, clicker, menu, slot, symbol << 8 | type.ordinal());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Drains the ring buffer until analytics are stopped. Run by the writer thread.</p>
+     */
+    private void run() {
+        long interval = TimeUnit.MILLISECONDS.toNanos(250);
+        while (this.running) {
+            this.drain();
+            LockSupport.parkNanos(this, interval);
+        }
+
+        this.drain();
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            if (this.error == null) this.error = e;
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Writes all published events as one batch. Events are discarded once writing has failed.</p>
+     */
+    private void drain() {
+        long seq = this.tail.get();
+        long end = this.head.get();
+        if (seq == end) return;
+
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (; seq < end; seq++) {
+                if (this.error != null) continue;
+
+                int i = (int) seq & this.mask;
+                sb.setLength(0);
+                this.format(sb, i);
+                if (this.fileSize + sb.length() > this.maxFileSize) this.roll();
+
+                this.out.append(sb);
+                this.fileSize += sb.length(); // close enough to bytes; names are rarely beyond ASCII
+                this.written++;
+            }
+
+            this.out.flush();
+        } catch (IOException e) {
+            this.error = e;
+        } finally {
+            this.tail.lazySet(end);
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Formats the event in the given slot of the ring buffer as a line.</p>
+     *
+     * @param sb the builder to append the line to
+     * @param i the index of the slot
+     */
+    private void format(StringBuilder sb, int i) {
+        byte event = this.events[i];
+        UUID uid = new UUID(this.playersMost[i], this.playersLeast[i]);
+        sb.append(this.times[i]).append('\t').append(MenuAnalytics.EVENTS[event]).append('\t').append(uid)
+            .append('\t').append(this.symbolNames.get(this.menus[i])).append('\t');
+
+        switch (event) {
+            case MenuAnalytics.OPEN:
+                this.opened.put(uid, this.times[i]);
+                sb.append("\t\t");
+                break;
+            case MenuAnalytics.CLOSE:
+                Long opened = this.opened.remove(uid);
+                sb.append("\t\t");
+                if (opened != null) sb.append(this.times[i] - opened);
+                break;
+            case MenuAnalytics.CLICK:
+                int button = this.details[i] >>> 8;
+                sb.append(this.slots[i]).append('\t');
+                if (button != 0) sb.append(this.symbolNames.get(button));
+                sb.append('\t').append(MenuAnalytics.CLICK_TYPES[this.details[i] & 0xFF].name());
+                break;
+            case MenuAnalytics.MARK:
+                sb.append("\t\t").append(this.symbolNames.get(this.details[i]));
+                break;
+        }
+
+        sb.append('\n');
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Starts a new file, deleting the oldest ones if there are too many.</p>
+     */
+    private void roll() throws IOException {
+        if (this.out != null) this.out.close();
+
+        Path file = this.directory.resolve(String.format("analytics-%d-%04d.tsv", this.started, this.fileIndex++));
+        this.out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 65536);
+        this.out.write(MenuAnalytics.HEADER);
+        this.fileSize = MenuAnalytics.HEADER.length();
+
+        this.files.add(file);
+        while (this.files.size() > this.maxFiles) Files.deleteIfExists(this.files.poll());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Stops the writer thread once it has written all published events.</p>
+     */
+    void stop() {
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // endregion
+
+    /**
+     * Publishes a mark placed by the given {@link Player} on a {@link Menu}, such as reaching a step of a purchase
+     * flow. Marks are identified by their label; use a small, fixed set of labels. Each label is interned the first
+     * time it's used.
+     *
+     * @param player the Player
+     * @param menu the Menu
+     * @param label the label of the mark
+     */
+    public void mark(Player player, Menu menu, String label) {
+        this.publish(MenuAnalytics.MARK, player, menu, -1, this.symbol(Objects.requireNonNull(label)));
+    }
+
+    /**
+     * @return the directory analytics files are written to
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * @return the size in bytes files grow to before rolling over
+     */
+    public long getMaxFileSize() {
+        return this.maxFileSize;
+    }
+
+    /**
+     * Sets the size in bytes files grow to before rolling over. Defaults to 16 MiB.
+     *
+     * @param bytes the maximum file size
+     */
+    public void setMaxFileSize(long bytes) {
+        if (bytes < 1024) throw new IllegalArgumentException("Files must be allowed at least 1 KiB");
+        this.maxFileSize = bytes;
+    }
+
+    /**
+     * @return the number of files kept before the oldest are deleted
+     */
+    public int getMaxFiles() {
+        return this.maxFiles;
+    }
+
+    /**
+     * Sets the number of files kept before the oldest are deleted. Defaults to 8.
+     *
+     * @param files the maximum number of files
+     */
+    public void setMaxFiles(int files) {
+        if (files < 1) throw new IllegalArgumentException("At least one file must be kept");
+        this.maxFiles = files;
+    }
+
+    /**
+     * @return the number of events written so far
+     */
+    public long getWrittenCount() {
+        return this.written;
+    }
+
+    /**
+     * Returns the number of events dropped because the ring buffer was full. Events are only dropped if they're
+     * published faster than they can be written.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        return this.dropped;
+    }
+
+    /**
+     * @return the error that stopped events from being written?
+     */
+    public Optional<IOException> getError() {
+        return Optional.ofNullable(this.error);
+    }
+
+}
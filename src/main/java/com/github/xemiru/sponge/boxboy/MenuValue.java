@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.Button;
+import com.github.xemiru.sponge.boxboy.button.ValueButton;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+/**
+ * An observable value displayed by {@link ValueButton}s.
+ *
+ * <p>Setting a new value invalidates exactly the slots of the {@link Menu}s holding a ValueButton bound to it. Any
+ * number of changes made to a MenuValue within the same tick result in a single update.</p>
+ *
+ * @param <T> the type of the value
+ */
+public class MenuValue<T> {
+
+    // region statics
+
+    private static Queue<MenuValue<?>> changed;
+
+    static {
+        MenuValue.changed = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Creates a new {@link MenuValue} holding the given value.
+     *
+     * @param value the initial value
+     * @param <T> the type of the value
+     * @return the MenuValue
+     */
+    public static <T> MenuValue<T> of(T value) {
+        return new MenuValue<>(value);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Invalidates the slots displaying all {@link MenuValue}s changed since the last call to this method. Must be
+     * called on the main thread.</p>
+     */
+    static void flushChanges() {
+        MenuValue<?> value;
+        while ((value = MenuValue.changed.poll()) != null) {
+            value.pending.set(false);
+            value.buttons.forEach(Menu::invalidatePlacements);
+        }
+    }
+
+    // endregion
+
+    private volatile T value;
+    private AtomicBoolean pending;
+    private Set<Button> buttons;
+
+    private MenuValue(T value) {
+        this.value = value;
+        this.pending = new AtomicBoolean(false);
+        this.buttons = Collections.newSetFromMap(new WeakHashMap<>());
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Records that the given {@link Button} displays this {@link MenuValue}. The slots it is set in are
+     * invalidated whenever this MenuValue changes.</p>
+     *
+     * @param button the Button
+     */
+    void bind(Button button) {
+        this.buttons.add(button);
+    }
+
+    // endregion
+
+    /**
+     * Returns the current value held by this {@link MenuValue}.
+     *
+     * @return the current value
+     */
+    public T get() {
+        return this.value;
+    }
+
+    /**
+     * Sets the value held by this {@link MenuValue}, invalidating the slots displaying it if it has changed.
+     *
+     * <p>This method is safe to call from any thread.</p>
+     *
+     * @param value the new value
+     */
+    public synchronized void set(T value) {
+        if (Objects.equals(this.value, value)) return;
+
+        this.value = value;
+        if (this.pending.compareAndSet(false, true)) MenuValue.changed.add(this);
+    }
+
+    /**
+     * Sets the value held by this {@link MenuValue} to the result of applying the given function to the current one.
+     *
+     * <p>See {@link #set(Object)}. The update is atomic with respect to other changes made to this MenuValue.</p>
+     *
+     * @param function the function to apply
+     */
+    public synchronized void update(UnaryOperator<T> function) {
+        this.set(function.apply(this.value));
+    }
+
+}
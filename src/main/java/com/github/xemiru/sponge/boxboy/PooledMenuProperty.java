@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.util.MenuProperty;
+import org.spongepowered.api.item.inventory.Inventory;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@link MenuProperty} of a pooled {@link Inventory}, reporting whichever {@link Menu} currently owns it.
+ *
+ * <p>Pooled inventories are reused by different Menus over time, while properties are fixed once an Inventory is
+ * built. The owner is only ever changed by the {@link InventoryPool}.</p>
+ */
+final class PooledMenuProperty extends MenuProperty {
+
+    private static final String KEY = MenuProperty.of(null).getKey();
+
+    private AtomicReference<Menu> owner;
+
+    /**
+     * @param owner holds the current owner, or null if the Inventory is unused
+     */
+    PooledMenuProperty(AtomicReference<Menu> owner) {
+        super(null, Operator.EQUAL);
+        this.owner = Objects.requireNonNull(owner);
+    }
+
+    @Override
+    public String getKey() {
+        // Looked up like any other MenuProperty.
+        return PooledMenuProperty.KEY;
+    }
+
+    @Override
+    public Menu getValue() {
+        return this.owner.get();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        // The owner changes over time; equality must not, or the property would get lost in hashed collections.
+        return this == obj;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.item.inventory.entity.PlayerInventory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The slots of an {@link Inventory} usable by a {@link Menu}, in display order.
+ *
+ * <p>Iterating through the slots of an Inventory is comparatively expensive; layouts are thus computed once per
+ * Inventory and allow direct access to the slot displaying a given {@link Menu} index.</p>
+ */
+class SlotLayout {
+
+    // Player inventories only display the 36 slots of the main inventory; equipment and offhand slots are left alone.
+    private static final int PLAYER_SLOTS = 36;
+
+    private static Map<UUID, SlotLayout> players;
+
+    static {
+        SlotLayout.players = new HashMap<>();
+    }
+
+    /**
+     * Computes the layout of the provided {@link Inventory}.
+     *
+     * @param inv the Inventory
+     * @return the layout of the Inventory
+     */
+    static SlotLayout of(Inventory inv) {
+        List<Inventory> slots = new ArrayList<>();
+        for (Inventory slot : inv.slots()) {
+            if (inv instanceof PlayerInventory && slots.size() == SlotLayout.PLAYER_SLOTS) break;
+            slots.add(slot);
+        }
+
+        return new SlotLayout(inv, slots.toArray(new Inventory[0]));
+    }
+
+    /**
+     * Returns the layout of the provided {@link Player}'s inventory, computing it if it hasn't been yet or if the
+     * Player's inventory has changed since.
+     *
+     * @param player the Player
+     * @return the layout of the Player's inventory
+     */
+    static SlotLayout of(Player player) {
+        Inventory inv = player.getInventory();
+        SlotLayout layout = SlotLayout.players.get(player.getUniqueId());
+
+        // Players get new inventories when they respawn.
+        if (layout == null || layout.inventory != inv) {
+            layout = SlotLayout.of(inv);
+            SlotLayout.players.put(player.getUniqueId(), layout);
+        }
+
+        return layout;
+    }
+
+    /**
+     * Drops the cached layout of the inventory of the {@link Player} with the provided {@link UUID}.
+     *
+     * @param uid the UUID of the Player
+     */
+    static void forget(UUID uid) {
+        SlotLayout.players.remove(uid);
+    }
+
+    private Inventory inventory;
+    private Inventory[] slots;
+
+    private SlotLayout(Inventory inventory, Inventory[] slots) {
+        this.inventory = inventory;
+        this.slots = slots;
+    }
+
+    /**
+     * @return the number of slots in this layout
+     */
+    int size() {
+        return this.slots.length;
+    }
+
+    /**
+     * @param index the index of the slot
+     * @return the slot at the given index
+     */
+    Inventory get(int index) {
+        return this.slots[index];
+    }
+
+}
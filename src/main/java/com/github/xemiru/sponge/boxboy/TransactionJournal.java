@@ -0,0 +1,640 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.util.ClickContext;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of transactions made through {@link Menu}s, kept for auditing.
+ *
+ * <p>Records are fixed-size and written into memory-mapped segment files, such that appending one costs no more than
+ * copying it into memory and never waits on the disk. A background thread commits appended records to disk in groups,
+ * every few milliseconds. Records survive the server process crashing as soon as they're appended, and survive the
+ * machine crashing once they're committed; {@link #whenCommitted(long, Runnable, Consumer)} runs an action once a
+ * record is committed, for instance to hand out a bought item only after its purchase is on disk.</p>
+ *
+ * <p>Each segment file starts with the magic number {@code BXJL}, a format version and the sequence number of its
+ * first record, followed by 64-byte records: a CRC-32 of the rest of the record, the sequence number, the time in
+ * epoch milliseconds, the player's {@link UUID}, the slot, the type, the amount and the reference, all big-endian.
+ * Reopening a journal after a crash drops any torn record at its end. Journals are read back through
+ * {@link #read(Path)}.</p>
+ *
+ * <p>A journal that fails to write to disk stops accepting records; see {@link #getError()}.</p>
+ *
+ * <p>Records are appended on the main thread, usually through {@link ClickContext#journal(int, long, long)}.</p>
+ */
+public class TransactionJournal implements Closeable {
+
+    static final int MAGIC = 0x42584A4C;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 64;
+
+    /**
+     * Internal method.
+     *
+     * <p>Decodes a record, checking its CRC and sequence number.</p>
+     *
+     * @param record the bytes of the record
+     * @param expected the sequence number the record should have
+     * @param crc the CRC-32 to check the record with
+     * @return the record, or null if the record is torn, blank or out of sequence
+     */
+    static JournalRecord decode(byte[] record, long expected, CRC32 crc) {
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        crc.reset();
+        crc.update(record, 4, TransactionJournal.RECORD_SIZE - 4);
+        if (buf.getInt(0) != (int) crc.getValue() || buf.getLong(4) != expected) return null;
+
+        return new JournalRecord(expected, buf.getLong(12), new UUID(buf.getLong(20), buf.getLong(28)),
+            buf.getInt(36), buf.getInt(40), buf.getLong(44), buf.getLong(52));
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Checks whether the record slot at the given offset of a segment holds only zeroes.</p>
+     *
+     * @param map the segment
+     * @param at the offset of the record slot
+     * @return if the slot is blank
+     */
+    private static boolean isBlank(ByteBuffer map, int at) {
+        for (int i = 0; i < TransactionJournal.RECORD_SIZE; i += 8) if (map.getLong(at + i) != 0) return false;
+        return true;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Lists the segment files of the journal in the given directory, oldest first.</p>
+     *
+     * @param directory the directory of the journal
+     * @return the segment files
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("journal-\\d{20}\\.bxbj"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Opens the journal in the given directory for reading, from its first record on.
+     *
+     * <p>The journal may be read while it is open for appending; records appended after the reader reached them
+     * aren't read.</p>
+     *
+     * @param directory the directory of the journal
+     * @return the reader
+     * @throws IOException if the directory couldn't be listed
+     */
+    public static JournalReader read(Path directory) throws IOException {
+        return new JournalReader(TransactionJournal.segments(directory));
+    }
+
+    /**
+     * A memory-mapped segment file.
+     */
+    private static class Segment {
+
+        private FileChannel channel;
+        private MappedByteBuffer map;
+        private long first;
+        private int capacity;
+        private int count;
+
+    }
+
+    /**
+     * An action waiting for a record to be committed.
+     */
+    private static class Pending {
+
+        private long sequence;
+        private Runnable action;
+        private Consumer<IOException> failure;
+
+        private Pending(long sequence, Runnable action, Consumer<IOException> failure) {
+            this.sequence = sequence;
+            this.action = action;
+            this.failure = failure;
+        }
+
+    }
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final Executor executor;
+    private final CRC32 crc;
+    private final byte[] scratch;
+    private final ByteBuffer record;
+
+    private Segment current;
+    private volatile Segment spare;
+    private boolean preparing;
+    private List<Segment> retired;
+    private long appended;
+    private volatile long committed;
+    private Queue<Pending> pending;
+
+    private volatile long commitInterval;
+    private volatile boolean running;
+    private volatile IOException error;
+    private Thread thread;
+
+    TransactionJournal(Path directory, int segmentRecords, Executor executor) throws IOException {
+        if (segmentRecords < 1) throw new IllegalArgumentException("Segments must hold at least one record");
+
+        this.directory = Files.createDirectories(directory);
+        this.segmentRecords = segmentRecords;
+        this.executor = Objects.requireNonNull(executor);
+        this.crc = new CRC32();
+        this.scratch = new byte[TransactionJournal.RECORD_SIZE];
+        this.record = ByteBuffer.wrap(this.scratch);
+        this.spare = null;
+        this.retired = new ArrayList<>();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.commitInterval = TimeUnit.MILLISECONDS.toNanos(10);
+        this.error = null;
+        this.recover();
+
+        this.running = true;
+        this.thread = new Thread(this::run, "Boxboy Journal Committer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Finds the end of the journal, dropping any torn records left behind by a crash, or starts a new journal if
+     * there is none.</p>
+     */
+    private void recover() throws IOException {
+        List<Path> files = TransactionJournal.segments(this.directory);
+        Segment segment = null;
+        while (segment == null && !files.isEmpty()) {
+            Path file = files.remove(files.size() - 1);
+            segment = this.map(file);
+
+            // A crash while creating a segment leaves it without a header; it never held any records.
+            MappedByteBuffer map = segment.map;
+            if (map.capacity() < TransactionJournal.HEADER_SIZE || map.getInt(0) == 0) {
+                segment.channel.close();
+                Files.delete(file);
+                segment = null;
+                continue;
+            }
+
+            if (map.getInt(0) != TransactionJournal.MAGIC) throw new IOException("Not a Boxboy transaction journal");
+            if (map.getInt(4) != TransactionJournal.VERSION)
+                throw new IOException("Unsupported journal version " + map.getInt(4));
+
+            segment.first = map.getLong(8);
+            map.position(TransactionJournal.HEADER_SIZE);
+            while (segment.count < segment.capacity) {
+                map.get(this.scratch);
+                if (TransactionJournal.decode(this.scratch, segment.first + segment.count, this.crc) == null) break;
+                segment.count++;
+            }
+
+            // Segments are created ahead of time; one left empty follows a segment that may not have been filled.
+            if (segment.count == 0 && !files.isEmpty()) {
+                segment.channel.close();
+                Files.delete(file);
+                segment = null;
+            }
+        }
+
+        if (segment == null) {
+            this.current = this.create(1);
+            this.appended = 0;
+            this.committed = 0;
+            return;
+        }
+
+        MappedByteBuffer map = segment.map;
+        // Pages reach the disk in any order; records persisted past a torn or missing one, however far past, must not
+        // be mistaken for new ones once appending reaches them again. Only slots holding something are written, so
+        // the untouched rest of the file stays sparse.
+        Arrays.fill(this.scratch, (byte) 0);
+        boolean blanked = false;
+        for (int slot = segment.capacity - 1; slot >= segment.count; slot--) {
+            int at = TransactionJournal.HEADER_SIZE + slot * TransactionJournal.RECORD_SIZE;
+            if (TransactionJournal.isBlank(map, at)) continue;
+
+            map.position(at);
+            map.put(this.scratch);
+            blanked = true;
+        }
+
+        if (blanked) map.force();
+        map.position(TransactionJournal.HEADER_SIZE + segment.count * TransactionJournal.RECORD_SIZE);
+        this.current = segment;
+        this.appended = segment.first + segment.count - 1;
+        this.committed = this.appended;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Maps an existing segment file.</p>
+     *
+     * @param file the segment file
+     * @return the segment
+     */
+    private Segment map(Path file) throws IOException {
+        Segment segment = new Segment();
+        segment.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.map = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, segment.channel.size());
+        segment.capacity = Math.max(0, segment.map.capacity() - TransactionJournal.HEADER_SIZE)
+            / TransactionJournal.RECORD_SIZE;
+        return segment;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Creates and maps a new segment file, writing its header.</p>
+     *
+     * @param first the sequence number of the first record of the segment
+     * @return the segment
+     */
+    private Segment create(long first) throws IOException {
+        Path file = this.directory.resolve(String.format("journal-%020d.bxbj", first));
+        long size = TransactionJournal.HEADER_SIZE + (long) this.segmentRecords * TransactionJournal.RECORD_SIZE;
+
+        Segment segment = new Segment();
+        segment.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        segment.map = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment.map.putInt(TransactionJournal.MAGIC).putInt(TransactionJournal.VERSION).putLong(first);
+        segment.map.force();
+        segment.first = first;
+        segment.capacity = this.segmentRecords;
+        return segment;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Moves appending on to the next segment, using the segment prepared by the committer thread if there is
+     * one.</p>
+     */
+    private void roll() throws IOException {
+        // The committer may be creating the next segment right now; creating it here too would collide with it.
+        try {
+            while (this.preparing) this.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next segment");
+        }
+
+        long first = this.current.first + this.current.count;
+        Segment next = this.spare;
+        this.spare = null;
+        if (next == null || next.first != first) next = this.create(first);
+
+        this.retired.add(this.current);
+        this.current = next;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Commits records until the journal is closed. Run by the committer thread.</p>
+     */
+    private void run() {
+        try {
+            while (this.running) {
+                LockSupport.parkNanos(this, this.commitInterval);
+                this.commit();
+                this.prepare();
+            }
+
+            this.commit();
+        } catch (Throwable e) {
+            // Nothing is committed once this thread is gone; anything waiting must hear about it.
+            this.fail(new IOException("Journal committer stopped", e));
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Forces all appended records to disk, then runs the actions waiting on them.</p>
+     */
+    private void commit() {
+        long target;
+        List<Segment> segments;
+        synchronized (this) {
+            target = this.appended;
+            if (target == this.committed || this.error != null) return;
+
+            segments = new ArrayList<>(this.retired);
+            segments.add(this.current);
+            this.retired.clear();
+        }
+
+        IOException failure = null;
+        try {
+            for (Segment segment : segments) segment.map.force();
+        } catch (Exception e) {
+            // Java 8 throws the IOException of a failed msync without declaring it; later versions wrap it.
+            if (e instanceof IOException) failure = (IOException) e;
+            else if (e instanceof UncheckedIOException) failure = ((UncheckedIOException) e).getCause();
+            else failure = new IOException(e);
+        }
+
+        // Retired segments are never written again, committed or not.
+        for (int i = 0; i < segments.size() - 1; i++) {
+            try {
+                segments.get(i).channel.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+
+        if (failure != null) {
+            this.fail(failure);
+            return;
+        }
+
+        this.committed = target;
+        this.pending.removeIf(it -> {
+            if (it.sequence > target) return false;
+
+            this.executor.execute(it.action);
+            return true;
+        });
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Stops this journal after an error, running the failure actions of everything waiting on a record.</p>
+     *
+     * @param e the error
+     */
+    private void fail(IOException e) {
+        synchronized (this) {
+            if (this.error == null) this.error = e;
+        }
+
+        IOException error = this.error;
+        Pending it;
+        while ((it = this.pending.poll()) != null) {
+            Consumer<IOException> failure = it.failure;
+            this.executor.execute(() -> failure.accept(error));
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Creates the next segment ahead of time once the current one is half full, so appending never has to.</p>
+     */
+    private void prepare() {
+        long first;
+        synchronized (this) {
+            if (this.spare != null || this.preparing || this.current.count < this.current.capacity / 2) return;
+            first = this.current.first + this.current.capacity;
+            this.preparing = true;
+        }
+
+        Segment segment = null;
+        try {
+            segment = this.create(first);
+        } catch (IOException e) {
+            this.fail(e);
+        }
+
+        synchronized (this) {
+            this.spare = segment;
+            this.preparing = false;
+            this.notifyAll();
+        }
+    }
+
+    // endregion
+
+    /**
+     * Appends a record to this journal.
+     *
+     * @param player the player causing the record
+     * @param slot the clicked slot, or -1 if unknown
+     * @param type the type of the record
+     * @param amount the amount of the record
+     * @param reference the reference of the record
+     * @return the sequence number of the record
+     * @throws IllegalStateException if this journal was closed or has failed
+     * @see JournalRecord
+     */
+    public synchronized long append(Player player, int slot, int type, long amount, long reference) {
+        if (!this.running) throw new IllegalStateException("Journal is closed");
+        if (this.error != null) throw new IllegalStateException("Journal has failed", this.error);
+
+        if (this.current.count == this.current.capacity) {
+            try {
+                this.roll();
+            } catch (IOException e) {
+                this.fail(e);
+                throw new IllegalStateException("Journal has failed", e);
+            }
+        }
+
+        long sequence = this.appended + 1;
+        UUID uid = player.getUniqueId();
+        this.record.clear();
+        this.record.putInt(0).putLong(sequence).putLong(System.currentTimeMillis())
+            .putLong(uid.getMostSignificantBits()).putLong(uid.getLeastSignificantBits())
+            .putInt(slot).putInt(type).putLong(amount).putLong(reference).putInt(0);
+
+        this.crc.reset();
+        this.crc.update(this.scratch, 4, TransactionJournal.RECORD_SIZE - 4);
+        this.record.putInt(0, (int) this.crc.getValue());
+
+        this.current.map.put(this.scratch);
+        this.current.count++;
+        this.appended = sequence;
+        return sequence;
+    }
+
+    /**
+     * Runs an action on the main thread once the record with the given sequence number has been committed to disk. If
+     * it has been committed already, the action is run right away. Must be called on the main thread.
+     *
+     * <p>If this journal fails before the record is committed, the action is never run; use
+     * {@link #whenCommitted(long, Runnable, Consumer)} to be told about it.</p>
+     *
+     * @param sequence the sequence number of the record
+     * @param action the action to run
+     */
+    public void whenCommitted(long sequence, Runnable action) {
+        this.whenCommitted(sequence, action, e -> {
+        });
+    }
+
+    /**
+     * Runs an action on the main thread once the record with the given sequence number has been committed to disk, or
+     * another if this journal fails before it is. If either has happened already, the matching action is run right
+     * away. Must be called on the main thread.
+     *
+     * @param sequence the sequence number of the record
+     * @param action the action to run once the record is committed
+     * @param failure the action to run with the error if the record can't be committed
+     */
+    public void whenCommitted(long sequence, Runnable action, Consumer<IOException> failure) {
+        Objects.requireNonNull(action);
+        Objects.requireNonNull(failure);
+        if (sequence <= this.committed) {
+            action.run();
+            return;
+        }
+
+        if (this.error != null) {
+            failure.accept(this.error);
+            return;
+        }
+
+        // The committer may have passed the record, or failed, while this was being queued; whoever dequeues it runs
+        // it.
+        Pending entry = new Pending(sequence, action, failure);
+        this.pending.add(entry);
+        if (sequence <= this.committed) {
+            if (this.pending.remove(entry)) action.run();
+        } else if (this.error != null) {
+            if (this.pending.remove(entry)) failure.accept(this.error);
+        }
+    }
+
+    /**
+     * @return the sequence number of the last record committed to disk, or 0 if there is none
+     */
+    public long getCommittedSequence() {
+        return this.committed;
+    }
+
+    /**
+     * @return the sequence number of the last record appended, or 0 if there is none
+     */
+    public synchronized long getAppendedSequence() {
+        return this.appended;
+    }
+
+    /**
+     * @return the time in milliseconds between group commits
+     */
+    public long getCommitInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(this.commitInterval);
+    }
+
+    /**
+     * Sets the time in milliseconds between group commits. Shorter intervals commit records sooner, at the cost of
+     * more writes to disk. Defaults to 10.
+     *
+     * @param millis the commit interval
+     */
+    public void setCommitInterval(long millis) {
+        if (millis < 1) throw new IllegalArgumentException("Commit interval must be at least 1 millisecond");
+        this.commitInterval = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @return the directory of this journal
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Returns the error that stopped this journal, if any. A failed journal accepts no more records and never commits
+     * the records still waiting to be; it should be closed.
+     *
+     * @return the error that stopped this journal?
+     */
+    public Optional<IOException> getError() {
+        return Optional.ofNullable(this.error);
+    }
+
+    /**
+     * Commits all appended records and closes this journal.
+     *
+     * @throws IOException if records couldn't be committed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!this.running) return;
+            this.running = false;
+        }
+
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.current.channel.close();
+        Segment spare = this.spare;
+        if (spare != null) {
+            spare.channel.close();
+            Files.delete(this.directory.resolve(String.format("journal-%020d.bxbj", spare.first)));
+        }
+        if (this.error != null) throw this.error;
+    }
+
+}
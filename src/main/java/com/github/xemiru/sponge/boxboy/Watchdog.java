@@ -0,0 +1,367 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.Button;
+import org.slf4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link Button} handlers and {@link Menu} updates, reporting those taking longer than they should.
+ *
+ * <p>Every click handler, offer handler and inventory update is timed against the threshold of its kind. Offenders are
+ * logged along with the Menu, slot and Button involved, and counted. If sampling is enabled, the log entry also
+ * includes what the main thread was doing once the threshold was crossed.</p>
+ *
+ * <p>The counts may be read from any thread.</p>
+ */
+public class Watchdog {
+
+    private Logger logger;
+    private Thread mainThread;
+    private ScheduledExecutorService sampler;
+
+    private long clickThreshold;
+    private long renderThreshold;
+    private boolean sampling;
+
+    private int depth;
+    private volatile long operation;
+    private volatile long deadline;
+    private volatile StackTraceElement[] sample;
+    private long sampled;
+
+    private volatile long clicks, slowClicks;
+    private volatile long offers, slowOffers;
+    private volatile long renders, slowRenders;
+
+    Watchdog(Logger logger) {
+        this.logger = logger;
+        this.mainThread = null;
+        this.sampler = null;
+
+        this.clickThreshold = TimeUnit.MILLISECONDS.toNanos(5);
+        this.renderThreshold = TimeUnit.MILLISECONDS.toNanos(10);
+        this.sampling = false;
+
+        this.depth = 0;
+        this.operation = 0;
+        this.deadline = 0;
+        this.sample = null;
+        this.sampled = 0;
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Describes a {@link Menu} for log entries, by name if it has one.</p>
+     *
+     * @param menu the Menu
+     * @return the description of the Menu
+     */
+    static String describe(Menu menu) {
+        return menu.getName()
+            .orElse(menu.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(menu)));
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Describes a time for log entries, in milliseconds.</p>
+     *
+     * @param nanos the time in nanoseconds
+     * @return the description of the time
+     */
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Marks the start of a timed operation on the main thread. If sampling is enabled and this isn't nested in
+     * another timed operation, the main thread's stack is sampled once the threshold has been crossed.</p>
+     *
+     * @param render whether the operation is an inventory update rather than a handler
+     * @return the start time of the operation
+     */
+    long begin(boolean render) {
+        long start = System.nanoTime();
+        long threshold = render ? this.renderThreshold : this.clickThreshold;
+        if (this.depth++ == 0 && this.sampling && threshold > 0) {
+            if (this.mainThread == null) this.mainThread = Thread.currentThread();
+
+            // Operations being sampled have odd ids; their deadline is published before their id.
+            this.sample = null;
+            this.deadline = start + threshold;
+            this.operation++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Run periodically on the sampler thread. Samples the main thread's stack once per timed operation, as soon as
+     * the operation has crossed its threshold.</p>
+     */
+    private void sample() {
+        long op = this.operation;
+        if ((op & 1) == 0 || op == this.sampled || System.nanoTime() - this.deadline < 0) return;
+
+        // The deadline read belongs to the operation if it's still running after the sample.
+        StackTraceElement[] trace = this.mainThread.getStackTrace();
+        if (this.operation != op) return;
+
+        this.sampled = op;
+        this.sample = trace;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Marks the end of a click handler.</p>
+     *
+     * @param menu the Menu clicked
+     * @param slot the slot clicked
+     * @param button the Button handling the click
+     * @param start the start time returned by {@link #begin(boolean)}
+     */
+    void endClick(Menu menu, int slot, Button button, long start) {
+        long time = this.end(start);
+        this.clicks++;
+        if (this.clickThreshold <= 0 || time < this.clickThreshold) return;
+
+        this.slowClicks++;
+        this.report("Slow click handler in menu {} at slot {}: {} took {}ms", Watchdog.describe(menu), slot,
+            button.getClass().getName(), Watchdog.millis(time));
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Marks the end of an offer handler.</p>
+     *
+     * @param menu the Menu offered to
+     * @param slot the slot offered to
+     * @param button the Button handling the offer
+     * @param start the start time returned by {@link #begin(boolean)}
+     */
+    void endOffer(Menu menu, int slot, Button button, long start) {
+        long time = this.end(start);
+        this.offers++;
+        if (this.clickThreshold <= 0 || time < this.clickThreshold) return;
+
+        this.slowOffers++;
+        this.report("Slow offer handler in menu {} at slot {}: {} took {}ms", Watchdog.describe(menu), slot,
+            button.getClass().getName(), Watchdog.millis(time));
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Marks the end of an inventory update.</p>
+     *
+     * @param menu the Menu updated
+     * @param slots the number of slots updated
+     * @param start the start time returned by {@link #begin(boolean)}
+     */
+    void endRender(Menu menu, int slots, long start) {
+        long time = this.end(start);
+        this.renders++;
+        if (this.renderThreshold <= 0 || time < this.renderThreshold) return;
+
+        this.slowRenders++;
+        this.report("Slow update of menu {}: {} slots took {}ms", Watchdog.describe(menu), slots,
+            Watchdog.millis(time));
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Marks the end of a timed operation.</p>
+     *
+     * @param start the start time returned by {@link #begin(boolean)}
+     * @return the time the operation took, in nanoseconds
+     */
+    private long end(long start) {
+        long time = System.nanoTime() - start;
+        if (--this.depth == 0 && (this.operation & 1) != 0) this.operation++; // stale samples can't be taken anymore
+        return time;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Logs an offender, appending the last stack sample if one was taken.</p>
+     *
+     * @param message the message to log
+     * @param args the arguments of the message
+     */
+    private void report(String message, Object... args) {
+        StackTraceElement[] sample = this.sample;
+        if (sample == null || this.depth > 0) {
+            this.logger.warn(message, args);
+            return;
+        }
+
+        this.sample = null;
+        StringBuilder sb = new StringBuilder(message).append("; main thread was at:");
+        for (StackTraceElement element : sample) sb.append("\n\tat ").append(element);
+        this.logger.warn(sb.toString(), args);
+    }
+
+    // endregion
+
+    /**
+     * Returns the time, in milliseconds, a click or offer handler may take before being reported.
+     *
+     * @return the handler threshold in milliseconds, or 0 if handlers are never reported
+     */
+    public long getClickThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(this.clickThreshold);
+    }
+
+    /**
+     * Sets the time, in milliseconds, a click or offer handler may take before being reported. Defaults to 5.
+     *
+     * @param millis the handler threshold in milliseconds, or 0 to never report handlers
+     */
+    public void setClickThreshold(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Threshold cannot be negative");
+        this.clickThreshold = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Returns the time, in milliseconds, a {@link Menu} inventory update may take before being reported.
+     *
+     * @return the update threshold in milliseconds, or 0 if updates are never reported
+     */
+    public long getRenderThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(this.renderThreshold);
+    }
+
+    /**
+     * Sets the time, in milliseconds, a {@link Menu} inventory update may take before being reported. Defaults to 10.
+     *
+     * @param millis the update threshold in milliseconds, or 0 to never report updates
+     */
+    public void setRenderThreshold(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Threshold cannot be negative");
+        this.renderThreshold = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Returns whether or not reports include a sample of the main thread's stack.
+     *
+     * @return if stack sampling is enabled
+     */
+    public boolean isSampling() {
+        return this.sampling;
+    }
+
+    /**
+     * Sets whether or not reports include a sample of the main thread's stack, taken as the threshold is crossed.
+     *
+     * <p>Sampling points at the code actually being slow rather than just the Button involved, at the cost of a
+     * background thread checking on the main thread every millisecond. Disabled by default.</p>
+     *
+     * @param sampling if stack sampling should be enabled
+     */
+    public void setSampling(boolean sampling) {
+        if (sampling && this.sampler == null) {
+            this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Boxboy Watchdog Sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.sampler.scheduleWithFixedDelay(this::sample, 1, 1, TimeUnit.MILLISECONDS);
+        } else if (!sampling && this.sampler != null) {
+            this.sampler.shutdownNow();
+            this.sampler = null;
+        }
+
+        this.sampling = sampling;
+    }
+
+    /**
+     * @return the number of click handlers timed
+     */
+    public long getClickCount() {
+        return this.clicks;
+    }
+
+    /**
+     * @return the number of click handlers reported as slow
+     */
+    public long getSlowClickCount() {
+        return this.slowClicks;
+    }
+
+    /**
+     * @return the number of offer handlers timed
+     */
+    public long getOfferCount() {
+        return this.offers;
+    }
+
+    /**
+     * @return the number of offer handlers reported as slow
+     */
+    public long getSlowOfferCount() {
+        return this.slowOffers;
+    }
+
+    /**
+     * @return the number of {@link Menu} inventory updates timed
+     */
+    public long getRenderCount() {
+        return this.renders;
+    }
+
+    /**
+     * @return the number of {@link Menu} inventory updates reported as slow
+     */
+    public long getSlowRenderCount() {
+        return this.slowRenders;
+    }
+
+    /**
+     * Resets all counts to zero.
+     *
+     * <p>This method must be called on the main thread.</p>
+     */
+    public void resetCounts() {
+        this.clicks = this.slowClicks = 0;
+        this.offers = this.slowOffers = 0;
+        this.renders = this.slowRenders = 0;
+    }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.Button;
+import com.github.xemiru.sponge.boxboy.util.ClickType;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Records {@link Menu} activity to a compact binary log, to be replayed later through {@link WorkloadReplay}.
+ *
+ * <p>The log starts with the magic number {@code BXBW} and a format version byte, followed by records. Each record is
+ * a type byte, the number of ticks since the previous record as a variable-length integer, then the fields of the
+ * record as variable-length integers:</p>
+ *
+ * <ul>
+ *     <li>{@code MENU}: menu id, type (as a UTF string), capacity. Written before the first record of a Menu.</li>
+ *     <li>{@code TYPE}: type id, Button class name (as a UTF string). Written before the first record of a Button
+ *     class.</li>
+ *     <li>{@code OPEN} and {@code CLOSE}: menu id, viewer</li>
+ *     <li>{@code CLICK}: menu id, viewer, {@link ClickType} ordinal, slot</li>
+ *     <li>{@code BUTTON}: menu id, slot, type id plus one or 0 if the slot was cleared</li>
+ *     <li>{@code INVALIDATE}: menu id, slot plus one or 0 if the whole Menu was invalidated</li>
+ * </ul>
+ *
+ * <p>Viewers are numbered in order of appearance; their identities aren't recorded. Menu types are Menu names, or the
+ * simple names of their class for unnamed Menus.</p>
+ *
+ * <p>Methods of this class must be called on the thread that created the recorder, normally the main thread.
+ * {@link #invalidate(Menu, int)} is the exception, as {@link Menu#invalidate()} may be called from any thread.</p>
+ */
+class WorkloadRecorder implements Closeable {
+
+    static final int MAGIC = 0x42584257;
+    static final int VERSION = 1;
+
+    static final byte MENU = 0, TYPE = 1, OPEN = 2, CLOSE = 3, CLICK = 4, BUTTON = 5, INVALIDATE = 6;
+
+    private DataOutputStream out;
+    private Thread owner;
+    private IOException error;
+    private long tick;
+    private long lastTick;
+    private Map<Menu, Integer> menus;
+    private int nextMenu;
+    private Map<UUID, Integer> viewers;
+    private Map<String, Integer> types;
+
+    WorkloadRecorder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+        this.owner = Thread.currentThread();
+        this.error = null;
+        this.tick = 0;
+        this.lastTick = 0;
+        this.menus = new WeakHashMap<>();
+        this.nextMenu = 0;
+        this.viewers = new HashMap<>();
+        this.types = new HashMap<>();
+
+        this.out.writeInt(WorkloadRecorder.MAGIC);
+        this.out.writeByte(WorkloadRecorder.VERSION);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Writes a variable-length integer: seven bits per byte, least significant first, with the high bit set on all
+     * bytes but the last. Read back through {@link WorkloadReplay#readVarLong(java.io.DataInput)}.</p>
+     *
+     * @param out the output to write to
+     * @param value the value to write; must not be negative
+     */
+    static void writeVarInt(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Writes a variable-length integer to the log.</p>
+     *
+     * @param value the value to write; must not be negative
+     */
+    private void writeVarInt(long value) throws IOException {
+        WorkloadRecorder.writeVarInt(this.out, value);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Writes the header of a record.</p>
+     *
+     * @param type the type of the record
+     */
+    private void writeHeader(byte type) throws IOException {
+        this.out.writeByte(type);
+        this.writeVarInt(this.tick - this.lastTick);
+        this.lastTick = this.tick;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the id of the given {@link Menu}, writing its definition first if it hasn't been seen yet.</p>
+     *
+     * @param menu the Menu
+     * @return the id of the Menu
+     */
+    private int menuId(Menu menu) throws IOException {
+        Integer id = this.menus.get(menu);
+        if (id != null) return id;
+
+        // Collected Menus leave the map, so its size would hand their ids to Menus that are still around.
+        id = this.nextMenu++;
+        this.menus.put(menu, id);
+        this.writeHeader(WorkloadRecorder.MENU);
+        this.writeVarInt(id);
+        this.out.writeUTF(menu.getName().orElse(menu.getClass().getSimpleName()));
+        this.writeVarInt(menu.getCapacity());
+        return id;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the id of the given {@link Button}'s class, writing its definition first if it hasn't been seen
+     * yet.</p>
+     *
+     * @param button the Button
+     * @return the id of the Button's class
+     */
+    private int typeId(Button button) throws IOException {
+        String type = button.getClass().getName();
+        Integer id = this.types.get(type);
+        if (id != null) return id;
+
+        id = this.types.size();
+        this.types.put(type, id);
+        this.writeHeader(WorkloadRecorder.TYPE);
+        this.writeVarInt(id);
+        this.out.writeUTF(type);
+        return id;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the number of the viewer with the given {@link UUID}.</p>
+     *
+     * @param uid the UUID of the viewer
+     * @return the number of the viewer
+     */
+    private int viewerId(UUID uid) {
+        return this.viewers.computeIfAbsent(uid, key -> this.viewers.size());
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Writes a record, giving up on recording if the log can't be written to.</p>
+     *
+     * @param record the code writing the record
+     */
+    private void record(RecordWriter record) {
+        if (this.error != null) return;
+
+        try {
+            record.write();
+        } catch (IOException e) {
+            this.error = e;
+        }
+    }
+
+    /**
+     * @return the error that stopped this recorder from writing, or null
+     */
+    IOException getError() {
+        return this.error;
+    }
+
+    /**
+     * Marks the passing of a tick.
+     */
+    void tick() {
+        this.tick++;
+    }
+
+    /**
+     * Records a {@link Menu} being opened.
+     *
+     * @param menu the Menu
+     * @param viewer the UUID of the viewer
+     */
+    void open(Menu menu, UUID viewer) {
+        this.record(() -> {
+            int id = this.menuId(menu);
+            this.writeHeader(WorkloadRecorder.OPEN);
+            this.writeVarInt(id);
+            this.writeVarInt(this.viewerId(viewer));
+        });
+    }
+
+    /**
+     * Records a {@link Menu} being closed.
+     *
+     * @param menu the Menu
+     * @param viewer the UUID of the viewer
+     */
+    void close(Menu menu, UUID viewer) {
+        this.record(() -> {
+            int id = this.menuId(menu);
+            this.writeHeader(WorkloadRecorder.CLOSE);
+            this.writeVarInt(id);
+            this.writeVarInt(this.viewerId(viewer));
+        });
+    }
+
+    /**
+     * Records a click in a {@link Menu}.
+     *
+     * @param menu the Menu
+     * @param viewer the UUID of the clicker
+     * @param type the type of click
+     * @param slot the slot clicked
+     */
+    void click(Menu menu, UUID viewer, ClickType type, int slot) {
+        this.record(() -> {
+            int id = this.menuId(menu);
+            this.writeHeader(WorkloadRecorder.CLICK);
+            this.writeVarInt(id);
+            this.writeVarInt(this.viewerId(viewer));
+            this.writeVarInt(type.ordinal());
+            this.writeVarInt(slot);
+        });
+    }
+
+    /**
+     * Records a {@link Button} being set in a {@link Menu}.
+     *
+     * @param menu the Menu
+     * @param slot the slot the Button was set at
+     * @param button the Button, or null if the slot was cleared
+     */
+    void button(Menu menu, int slot, Button button) {
+        this.record(() -> {
+            int id = this.menuId(menu);
+            int type = button == null ? 0 : this.typeId(button) + 1;
+            this.writeHeader(WorkloadRecorder.BUTTON);
+            this.writeVarInt(id);
+            this.writeVarInt(slot);
+            this.writeVarInt(type);
+        });
+    }
+
+    /**
+     * Records a {@link Menu} being invalidated.
+     *
+     * <p>Invalidations made on other threads are recorded once the main thread gets to them.</p>
+     *
+     * @param menu the Menu
+     * @param slot the slot invalidated, or -1 if the whole Menu was invalidated
+     */
+    void invalidate(Menu menu, int slot) {
+        if (Thread.currentThread() != this.owner) {
+            Boxboy.get().getMainExecutor().execute(() -> this.invalidate(menu, slot));
+            return;
+        }
+
+        this.record(() -> {
+            int id = this.menuId(menu);
+            this.writeHeader(WorkloadRecorder.INVALIDATE);
+            this.writeVarInt(id);
+            this.writeVarInt(slot + 1);
+        });
+    }
+
+    // endregion
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+    /**
+     * Writes a single record.
+     */
+    private interface RecordWriter {
+
+        void write() throws IOException;
+
+    }
+
+}
@@ -0,0 +1,464 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.Button;
+import com.github.xemiru.sponge.boxboy.util.Animation;
+import com.github.xemiru.sponge.boxboy.util.LatencyHistogram;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.text.Text;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Replays {@link Menu} activity captured through {@link Boxboy#startCapture(Path)}.
+ *
+ * <p>Replays reproduce the load a captured workload put on the menu task, on a server without any players: Menus are
+ * created again through a factory, and viewers are simulated. Opens, closes, clicks, Button changes and invalidations
+ * are replayed at the tick they were captured at, such that the effect of a change to Boxboy on the cost of the menu
+ * task can be measured through {@link Boxboy#getLastRenderTime()}, the {@link Watchdog} or a Flight Recorder
+ * recording.</p>
+ *
+ * <p>Click handlers themselves aren't run again; the changes they made to their Menu were captured and are replayed
+ * instead. Buttons can't be recreated from a capture, so changed Buttons are replaced by fresh stand-ins displaying
+ * the Button the factory set in their slot; Menus still go through the same churn of placements and renders. Simulated
+ * viewers have no client; their inventories are fakes, written to by {@link ExtendedMenu}s like real ones would
+ * be.</p>
+ *
+ * <p>Replays can also run without a server, through {@link #main(String[])}: the workload is then replayed against a
+ * headless {@link Boxboy} into plain Menus of the captured sizes, ticked back to back rather than 20 times per
+ * second.</p>
+ *
+ * <p>Methods of this class must be called on the main thread.</p>
+ */
+public class WorkloadReplay implements Closeable {
+
+    /**
+     * Opens a captured workload for replay.
+     *
+     * @param path the file the workload was captured to
+     * @return the replay
+     * @throws IOException if the file couldn't be read or isn't a captured workload
+     */
+    public static WorkloadReplay load(Path path) throws IOException {
+        return new WorkloadReplay(Files.newInputStream(path));
+    }
+
+    /**
+     * Replays a captured workload against a headless {@link Boxboy}, without a server, and prints the time taken by
+     * the menu task.
+     *
+     * <p>Captured {@link Menu}s are recreated as empty chests of the same size, holding at most six rows.</p>
+     *
+     * @param args the file the workload was captured to
+     * @throws IOException if the file couldn't be read or isn't a captured workload
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) throw new IllegalArgumentException("Usage: WorkloadReplay <capture file>");
+
+        Boxboy boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+        try (WorkloadReplay replay = WorkloadReplay.load(Paths.get(args[0]))) {
+            LatencyHistogram ticks = replay.runHeadless(boxboy, (type, capacity) ->
+                boxboy.createMenu(Math.min(6, Math.max(1, (capacity + 8) / 9)), Text.of(type)));
+
+            System.out.println("Replayed " + replay.getReplayedCount() + " records over " + replay.getTicks()
+                + " ticks; menu task: " + ticks);
+            if (replay.getError().isPresent()) throw replay.getError().get();
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Reads a variable-length integer written through {@link WorkloadRecorder#writeVarInt(java.io.DataOutput,
+     * long)}.</p>
+     *
+     * @param in the input to read from
+     * @return the value read
+     */
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    private DataInputStream in;
+    private BiFunction<String, Integer, Menu> factory;
+    private long tick;
+    private long nextTick;
+    private byte nextType;
+    private boolean finished;
+    private long replayed;
+    private IOException error;
+
+    private Map<Integer, Menu> menus;
+    private Map<Menu, Button[]> originals;
+    private Map<Integer, Player> viewers;
+    private Map<Menu, Long> clicked;
+
+    WorkloadReplay(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 65536));
+        this.factory = null;
+        this.tick = 0;
+        this.nextTick = 0;
+        this.finished = false;
+        this.replayed = 0;
+        this.error = null;
+        this.menus = new HashMap<>();
+        this.originals = new HashMap<>();
+        this.viewers = new HashMap<>();
+        this.clicked = new HashMap<>();
+
+        if (this.in.readInt() != WorkloadRecorder.MAGIC) throw new IOException("Not a captured Boxboy workload");
+
+        int version = this.in.readUnsignedByte();
+        if (version != WorkloadRecorder.VERSION) throw new IOException("Unsupported workload version " + version);
+        this.readHeader();
+    }
+
+    // region Internal methods
+
+    /**
+     * Internal method.
+     *
+     * <p>Reads a variable-length integer written by {@link WorkloadRecorder}.</p>
+     *
+     * @return the value read
+     */
+    private long readVarLong() throws IOException {
+        return WorkloadReplay.readVarLong(this.in);
+    }
+
+    private int readVarInt() throws IOException {
+        return (int) this.readVarLong();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Reads the header of the next record, or marks the replay as finished if there are none left.</p>
+     */
+    private void readHeader() throws IOException {
+        int type = this.in.read();
+        if (type < 0) {
+            this.finished = true;
+            return;
+        }
+
+        this.nextType = (byte) type;
+        this.nextTick += this.readVarLong();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Replays all records due by the current tick. Must be called once per tick by {@link Boxboy}.</p>
+     *
+     * @return false once the replay has finished
+     */
+    boolean step() {
+        if (this.finished) return false;
+
+        this.tick++;
+        try {
+            while (!this.finished && this.nextTick <= this.tick) {
+                this.apply(this.nextType);
+                this.replayed++;
+                this.readHeader();
+            }
+        } catch (EOFException e) {
+            this.finished = true; // a capture cut short by a crash still replays up to that point
+        } catch (IOException e) {
+            this.finished = true;
+            this.error = e;
+        } finally {
+            // Clicks are replayed along with the changes they made; they can be timed once those are in.
+            long now = System.nanoTime();
+            this.clicked.forEach((menu, changes) -> menu.stampClick(now, changes, -1));
+            this.clicked.clear();
+
+            if (this.finished) this.stop();
+        }
+
+        return !this.finished;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Reads the fields of a record and replays it.</p>
+     *
+     * @param type the type of the record
+     */
+    private void apply(byte type) throws IOException {
+        Boxboy boxboy = Boxboy.get();
+        switch (type) {
+            case WorkloadRecorder.MENU: {
+                int id = this.readVarInt();
+                String menuType = this.in.readUTF();
+                int capacity = this.readVarInt();
+                Menu menu = this.factory.apply(menuType, capacity);
+                if (menu == null) break;
+
+                this.menus.put(id, menu);
+                this.originals.put(menu, menu.buttons.clone());
+                break;
+            }
+            case WorkloadRecorder.TYPE:
+                this.readVarInt();
+                this.in.readUTF();
+                break;
+            case WorkloadRecorder.OPEN: {
+                Menu menu = this.menus.get(this.readVarInt());
+                Player player = this.viewer(this.readVarInt());
+                if (menu == null) break;
+
+                UUID viewer = player.getUniqueId();
+                Menu previous = Menu.viewerMap.put(viewer, menu);
+                if (previous != null) previous.removeViewer(viewer);
+                menu.addViewer(viewer);
+                boxboy.touchViewer(viewer);
+                if (menu instanceof ExtendedMenu) ((ExtendedMenu) menu).updatePlayer(player);
+                break;
+            }
+            case WorkloadRecorder.CLOSE: {
+                Menu menu = this.menus.get(this.readVarInt());
+                UUID viewer = this.viewer(this.readVarInt()).getUniqueId();
+                if (menu == null) break;
+
+                menu.removeViewer(viewer);
+                Menu.viewerMap.remove(viewer, menu);
+                break;
+            }
+            case WorkloadRecorder.CLICK: {
+                Menu menu = this.menus.get(this.readVarInt());
+                UUID viewer = this.viewer(this.readVarInt()).getUniqueId();
+                this.readVarInt(); // click type
+                this.readVarInt(); // slot
+                if (menu == null) break;
+
+                boxboy.touchViewer(viewer);
+                this.clicked.putIfAbsent(menu, menu.getChangeCount());
+                break;
+            }
+            case WorkloadRecorder.BUTTON: {
+                Menu menu = this.menus.get(this.readVarInt());
+                int slot = this.readVarInt();
+                boolean cleared = this.readVarInt() == 0;
+                if (menu == null || slot >= menu.getCapacity()) break;
+
+                menu.setButton(slot, cleared ? null : new StandIn(this.originals.get(menu)[slot]));
+                break;
+            }
+            case WorkloadRecorder.INVALIDATE: {
+                Menu menu = this.menus.get(this.readVarInt());
+                int slot = this.readVarInt() - 1;
+                if (menu == null) break;
+
+                if (slot < 0) menu.invalidate();
+                else if (slot < menu.getCapacity()) menu.invalidate(slot);
+                break;
+            }
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the simulated {@link Player} standing in for the viewer with the given number.</p>
+     *
+     * @param id the number of the viewer
+     * @return the simulated Player
+     */
+    private Player viewer(int id) {
+        return this.viewers.computeIfAbsent(id, key -> {
+            Player player = Headless.player(UUID.randomUUID(), "Replay-" + id);
+            Boxboy.get().addSimulatedPlayer(player);
+            return player;
+        });
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Runs this replay to completion on the given headless {@link Boxboy}, ticking it back to back.</p>
+     *
+     * @param boxboy the headless Boxboy
+     * @param factory the factory creating Menus for the replay, given their type and captured capacity
+     * @return the time taken by the menu task per tick
+     */
+    LatencyHistogram runHeadless(Boxboy boxboy, BiFunction<String, Integer, Menu> factory) {
+        if (!boxboy.isHeadless()) throw new IllegalArgumentException("Boxboy must be headless");
+
+        LatencyHistogram ticks = new LatencyHistogram();
+        this.begin(factory);
+        while (!this.finished) {
+            boxboy.tick();
+            ticks.record(boxboy.getLastTickTime());
+        }
+
+        return ticks;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Starts replaying this workload from the next tick.</p>
+     *
+     * @param factory the factory creating Menus for the replay, given their type and captured capacity
+     */
+    private void begin(BiFunction<String, Integer, Menu> factory) {
+        if (this.factory != null) throw new IllegalStateException("Replay was already started");
+
+        this.factory = Objects.requireNonNull(factory);
+        Boxboy.get().startSimulation(this::step);
+    }
+
+    // endregion
+
+    /**
+     * Starts replaying this workload from the next tick.
+     *
+     * <p>The factory is given the type of each captured {@link Menu} -- its name, or the simple name of its class if
+     * it had none -- and should create a Menu set up like the captured one. Returning null leaves out all activity of
+     * that Menu. The created Menus are disposed of once the replay ends.</p>
+     *
+     * @param factory the factory creating Menus for the replay
+     */
+    public void start(Function<String, Menu> factory) {
+        Objects.requireNonNull(factory);
+        this.begin((type, capacity) -> factory.apply(type));
+    }
+
+    /**
+     * Stops this replay, removing its simulated viewers and disposing of the {@link Menu}s it created.
+     */
+    public void stop() {
+        this.finished = true;
+        this.menus.values().forEach(menu -> {
+            this.viewers.values().forEach(viewer -> {
+                menu.removeViewer(viewer.getUniqueId());
+                Menu.viewerMap.remove(viewer.getUniqueId(), menu);
+            });
+
+            menu.dispose();
+        });
+
+        Boxboy boxboy = Boxboy.get();
+        this.viewers.values().forEach(viewer -> boxboy.forgetViewer(viewer.getUniqueId()));
+        this.menus.clear();
+        this.originals.clear();
+        try {
+            this.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * @return whether or not this replay has finished or was stopped
+     */
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * @return the error that ended this replay early?
+     */
+    public Optional<IOException> getError() {
+        return Optional.ofNullable(this.error);
+    }
+
+    /**
+     * @return the number of ticks replayed so far
+     */
+    public long getTicks() {
+        return this.tick;
+    }
+
+    /**
+     * @return the number of records replayed so far
+     */
+    public long getReplayedCount() {
+        return this.replayed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    /**
+     * A fresh {@link Button} set in place of a captured Button change, displaying the Button originally set in its slot.
+     */
+    private static class StandIn implements Button {
+
+        private Button original;
+
+        StandIn(Button original) {
+            this.original = original;
+        }
+
+        @Override
+        public ItemStack getRepresentative() {
+            return this.original == null ? null : this.original.getRepresentative();
+        }
+
+        @Override
+        public Optional<Animation<ItemStack>> getAnimatedRepresentative() {
+            return this.original == null ? Optional.empty() : this.original.getAnimatedRepresentative();
+        }
+
+        @Override
+        public boolean isDecorative() {
+            return this.original != null && this.original.isDecorative();
+        }
+
+    }
+
+}
@@ -25,6 +25,7 @@ package com.github.xemiru.sponge.boxboy.button;
 
 import com.github.xemiru.sponge.boxboy.util.Animation;
 import com.github.xemiru.sponge.boxboy.util.ClickContext;
+import com.github.xemiru.sponge.boxboy.util.RepresentativeCache;
 import org.spongepowered.api.item.inventory.ItemStack;
 
 import java.util.Objects;
@@ -49,6 +50,10 @@ public class ActionButton implements Button {
     /**
      * Creates a new {@link ActionButton} with a representative {@link ItemStack} and an associated action.
      *
+     * <p>The representative is interned through the {@link RepresentativeCache}; later changes to the given ItemStack
+     * will not be reflected by the ActionButton. {@link #getRepresentative()} returns the shared instance, which
+     * <b>must not be modified</b>; copy it first.</p>
+     *
      * @param representative the representative ItemStack
      * @param action the action to perform when clicked
      * @return the ActionButton
@@ -58,7 +63,7 @@ public class ActionButton implements Button {
         Objects.requireNonNull(action);
 
         ActionButton btn = new ActionButton();
-        btn.representative = representative;
+        btn.representative = RepresentativeCache.intern(representative);
         btn.consumer = action;
 
         return btn;
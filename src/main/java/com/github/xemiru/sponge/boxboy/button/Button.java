@@ -25,6 +25,7 @@ package com.github.xemiru.sponge.boxboy.button;
 
 import com.github.xemiru.sponge.boxboy.Menu;
 import com.github.xemiru.sponge.boxboy.util.Animation;
+import com.github.xemiru.sponge.boxboy.util.AnimationDetail;
 import com.github.xemiru.sponge.boxboy.util.ClickContext;
 import com.github.xemiru.sponge.boxboy.util.OfferContext;
 import org.spongepowered.api.item.inventory.ItemStack;
@@ -73,6 +74,18 @@ public interface Button {
         return Optional.empty();
     }
 
+    /**
+     * Returns whether or not this {@link Button} is purely decorative.
+     *
+     * <p>The animations of decorative Buttons are paused while the server is under heavy load; see
+     * {@link AnimationDetail}.</p>
+     *
+     * @return if this Button is purely decorative
+     */
+    default boolean isDecorative() {
+        return false;
+    }
+
     /**
      * Offers a change of the {@link ItemStack} in the slot this {@link Button} occupies.
      *
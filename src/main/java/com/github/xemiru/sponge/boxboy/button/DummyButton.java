@@ -24,6 +24,7 @@
 package com.github.xemiru.sponge.boxboy.button;
 
 import com.github.xemiru.sponge.boxboy.util.Animation;
+import com.github.xemiru.sponge.boxboy.util.RepresentativeCache;
 import org.spongepowered.api.item.inventory.ItemStack;
 
 import java.util.Objects;
@@ -45,6 +46,10 @@ public class DummyButton implements Button {
     /**
      * Creates a new {@link DummyButton} with a representative {@link ItemStack}.
      *
+     * <p>The representative is interned through the {@link RepresentativeCache}; later changes to the given ItemStack
+     * will not be reflected by the DummyButton. {@link #getRepresentative()} returns the shared instance, which
+     * <b>must not be modified</b>; copy it first.</p>
+     *
      * @param representative the representative ItemStack
      * @return the DummyButton
      */
@@ -52,7 +57,7 @@ public class DummyButton implements Button {
         Objects.requireNonNull(representative);
 
         DummyButton btn = new DummyButton();
-        btn.representative = representative;
+        btn.representative = RepresentativeCache.intern(representative);
 
         return btn;
     }
@@ -81,4 +86,9 @@ public class DummyButton implements Button {
     public Optional<Animation<ItemStack>> getAnimatedRepresentative() {
         return Optional.ofNullable(this.animation);
     }
+
+    @Override
+    public boolean isDecorative() {
+        return true;
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy.button;
+
+import com.github.xemiru.sponge.boxboy.Menu;
+import org.spongepowered.api.item.inventory.ItemStack;
+
+/**
+ * A {@link Button} whose representative changes over time, exposing a version number describing when it has changed.
+ *
+ * <p>{@link Menu}s check the version of each DynamicButton they hold every tick and update only the slots of those
+ * whose version differs from the one last displayed. This replaces returning true from the deprecated
+ * {@link Button#isAnimated()}, which causes the entire Menu to be updated every tick.</p>
+ */
+public interface DynamicButton extends Button {
+
+    /**
+     * Returns the current version of this {@link DynamicButton}'s representative.
+     *
+     * <p>The version must change whenever the {@link ItemStack} returned by {@link #getRepresentative()} changes, and
+     * should otherwise stay the same. As this method is called every tick, it should be cheap to call; an incrementing
+     * counter is typically sufficient.</p>
+     *
+     * @return the current version of this DynamicButton
+     */
+    long getVersion();
+
+}
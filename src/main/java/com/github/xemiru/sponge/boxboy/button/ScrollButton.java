@@ -111,7 +111,7 @@ public class ScrollButton implements Button {
             if (this.state <= -1) this.state = buttons.length - 1;
 
             this.getCurrentStateButton().onClick(context);
-            context.getSourceMenu().invalidate();
+            context.invalidateSlot();
         }
     }
 }
@@ -91,7 +91,7 @@ public class SlotButton implements Button {
         boolean same = original == this.held || (original != null && this.held != null && ItemStackComparators.TYPE_SIZE.compare(original, this.held) == 0);
         if (!same) {
             this.processor.accept(Optional.ofNullable(this.held));
-            context.getSourceMenu().invalidate();
+            context.invalidateSlot();
         }
 
         return true;
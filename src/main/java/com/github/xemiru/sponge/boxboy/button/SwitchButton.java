@@ -120,6 +120,6 @@ public class SwitchButton implements Button {
         this.state = !state;
 
         // Invalidate, as the state has changed and therefore the representative may have.
-        context.getSourceMenu().invalidate();
+        context.invalidateSlot();
     }
 }
@@ -135,6 +135,6 @@ public class ToggleButton implements Button {
         this.getCurrentStateButton().onClick(context);
 
         // Invalidate, as the state has changed and therefore the representative may have.
-        context.getSourceMenu().invalidate();
+        context.invalidateSlot();
     }
 }
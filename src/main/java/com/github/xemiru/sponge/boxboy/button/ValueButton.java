@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy.button;
+
+import com.github.xemiru.sponge.boxboy.MenuValue;
+import com.github.xemiru.sponge.boxboy.util.ClickContext;
+import org.spongepowered.api.item.inventory.ItemStack;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A {@link Button} implementation displaying the value held by a {@link MenuValue}.
+ *
+ * <p>The slots holding a ValueButton are updated whenever the value of its MenuValue changes; there is no need to
+ * invalidate them manually.</p>
+ *
+ * @param <T> the type of the displayed value
+ */
+public class ValueButton<T> implements Button {
+
+    private static final Consumer<ClickContext> DO_NOTHING = context -> {};
+
+    private MenuValue<T> value;
+    private Function<? super T, ItemStack> renderer;
+    private Consumer<ClickContext> consumer;
+
+    private T renderedValue;
+    private ItemStack representative;
+
+    private ValueButton() {
+    }
+
+    /**
+     * Creates a new {@link ValueButton} displaying the given {@link MenuValue}.
+     *
+     * @param value the MenuValue to display
+     * @param renderer the function creating the representative ItemStack of a value
+     * @param <T> the type of the displayed value
+     * @return the ValueButton
+     */
+    public static <T> ValueButton<T> of(MenuValue<T> value, Function<? super T, ItemStack> renderer) {
+        return ValueButton.of(value, renderer, DO_NOTHING);
+    }
+
+    /**
+     * Creates a new {@link ValueButton} displaying the given {@link MenuValue} with an associated action.
+     *
+     * @param value the MenuValue to display
+     * @param renderer the function creating the representative ItemStack of a value
+     * @param action the action to perform when clicked
+     * @param <T> the type of the displayed value
+     * @return the ValueButton
+     */
+    public static <T> ValueButton<T> of(MenuValue<T> value, Function<? super T, ItemStack> renderer,
+        Consumer<ClickContext> action) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(renderer);
+        Objects.requireNonNull(action);
+
+        ValueButton<T> btn = new ValueButton<>();
+        btn.value = value;
+        btn.renderer = renderer;
+        btn.consumer = action;
+
+        return btn;
+    }
+
+    /**
+     * Returns the {@link MenuValue} displayed by this {@link ValueButton}.
+     *
+     * @return the MenuValue displayed by this ValueButton
+     */
+    public MenuValue<T> getValue() {
+        return this.value;
+    }
+
+    @Override
+    public ItemStack getRepresentative() {
+        // Only re-render when the value actually changed.
+        T current = this.value.get();
+        if (this.representative == null || current != this.renderedValue) {
+            this.renderedValue = current;
+            this.representative = this.renderer.apply(current);
+        }
+
+        return this.representative;
+    }
+
+    @Override
+    public void onClick(ClickContext context) {
+        this.consumer.accept(context);
+    }
+
+}
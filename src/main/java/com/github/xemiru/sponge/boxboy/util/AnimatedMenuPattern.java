@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.WeakHashMap;
+import java.util.function.Predicate;
 
 /**
  * A utility class to create templates for animating {@link Menu}s.
@@ -60,7 +61,33 @@ public class AnimatedMenuPattern {
      * Updates all {@link Menu}s with animations to their current frame.
      */
     public static void refreshAnimations() {
+        AnimatedMenuPattern.refreshAnimations(true);
+    }
+
+    /**
+     * Updates all {@link Menu}s with animations to their current frame.
+     *
+     * @param decorative whether or not to update animations marked as decorative
+     * @see #setDecorative(boolean)
+     */
+    public static void refreshAnimations(boolean decorative) {
+        AnimatedMenuPattern.refreshAnimations(decorative, menu -> true);
+    }
+
+    /**
+     * Updates the {@link Menu}s with animations accepted by the provided filter to their current frame.
+     *
+     * <p>Menus left out keep their animation timers running; they jump straight to the then-current frame the next
+     * time they are updated.</p>
+     *
+     * @param decorative whether or not to update animations marked as decorative
+     * @param filter the filter deciding which Menus to update
+     * @see #setDecorative(boolean)
+     */
+    public static void refreshAnimations(boolean decorative, Predicate<Menu> filter) {
         AnimatedMenuPattern.patterns.forEach((menu, value) -> value.forEach(pattern -> {
+            if (!decorative && pattern.decorative) return;
+            if (!filter.test(menu)) return;
             if (pattern.patternFrames.isNewFrame()) {
                 String frame = pattern.patternFrames.getCurrentFrame();
                 pattern.pattern.setPattern(frame);
@@ -78,11 +105,13 @@ public class AnimatedMenuPattern {
 
         private MenuPattern pattern;
         private Animation<String> patternFrames;
+        private boolean decorative;
 
     }
 
     private Map<Character, Button> mapping;
     private Animation<String> patternFrames;
+    private boolean decorative;
 
     /**
      * Creates a new, empty {@link AnimatedMenuPattern}.
@@ -90,6 +119,21 @@ public class AnimatedMenuPattern {
     public AnimatedMenuPattern() {
         this.mapping = new HashMap<>();
         this.patternFrames = new Animation<>();
+        this.decorative = true;
+    }
+
+    /**
+     * Sets whether or not this {@link AnimatedMenuPattern} is purely decorative.
+     *
+     * <p>Decorative animations are paused while the server is under heavy load; see {@link AnimationDetail}. Patterns
+     * are decorative by default.</p>
+     *
+     * @param decorative if this AnimatedMenuPattern is purely decorative
+     * @return this AnimatedMenuPattern, for chaining
+     */
+    public AnimatedMenuPattern setDecorative(boolean decorative) {
+        this.decorative = decorative;
+        return this;
     }
 
     /**
@@ -178,6 +222,7 @@ public class AnimatedMenuPattern {
         AnimationPattern pattern = new AnimationPattern();
         pattern.pattern = new MenuPattern();
         pattern.patternFrames = this.patternFrames.clone();
+        pattern.decorative = this.decorative;
         pattern.pattern.mapping = new HashMap<>(this.mapping);
 
         AnimatedMenuPattern.patterns.putIfAbsent(menu, new ArrayList<>());
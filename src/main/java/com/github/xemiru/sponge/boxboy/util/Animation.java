@@ -23,6 +23,8 @@
  */
 package com.github.xemiru.sponge.boxboy.util;
 
+import org.spongepowered.api.item.inventory.ItemStack;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,10 +33,31 @@ import java.util.List;
  *
  * <p>Animation timings using this class are per-instance and begin on the first call of {@link #getCurrentFrame()}.</p>
  *
+ * <p>Animations of {@link ItemStack}s displayed by many buttons at once should be created from a shared
+ * {@link AnimationTimeline} instead.</p>
+ *
  * @param <T> the type of the object representing the animation's frames
  */
 public class Animation<T> {
 
+    /**
+     * Internal method.
+     *
+     * <p>Creates an {@link Animation} playing the given {@link AnimationTimeline}. The Animation only reads the
+     * timeline; adding frames to it gives it its own copy of the timeline's frames first.</p>
+     *
+     * @param timeline the AnimationTimeline to play
+     * @param offset the time into the timeline to start at, in milliseconds
+     * @return the Animation
+     */
+    static Animation<ItemStack> of(AnimationTimeline timeline, long offset) {
+        Animation<ItemStack> anim = new Animation<>();
+        anim.timeline = timeline;
+        anim.offset = offset;
+
+        return anim;
+    }
+
     /**
      * Internal data class for storing frame data.
      */
@@ -47,14 +70,20 @@ public class Animation<T> {
 
     private long max;
     private long start;
+    private long offset;
     private List<Frame> frames;
     private Frame currentFrame;
+    private AnimationTimeline timeline;
+    private int currentIndex;
 
     public Animation() {
         this.max = 0;
         this.start = -1;
+        this.offset = 0;
         this.frames = new ArrayList<>();
         this.currentFrame = null;
+        this.timeline = null;
+        this.currentIndex = -1;
     }
 
     /**
@@ -63,7 +92,7 @@ public class Animation<T> {
      * @return if this Animation has no frames
      */
     public boolean isEmpty() {
-        return this.frames.isEmpty();
+        return this.timeline == null && this.frames.isEmpty();
     }
 
     /**
@@ -74,11 +103,16 @@ public class Animation<T> {
      * <p>Minecraft's update rate of 20 ticks per second sets the lowest effective value for this method to be 50ms
      * (1/20th of a second).</p>
      *
+     * <p>If this Animation plays an {@link AnimationTimeline}, it stops sharing it: it first takes its own copy of the
+     * timeline's frames, then adds the new one. The timeline and its other Animations are left as they are.</p>
+     *
      * @param obj the object representing the frame and thus the object returned upon calling {@link #getCurrentFrame()}
      * @param time how long the frame is displayed, in milliseconds
      * @return this Animation, for chaining
      */
     public Animation<T> frame(T obj, long time) {
+        if (this.timeline != null) this.detach();
+
         Frame frame = new Frame();
         frame.stack = obj;
         frame.time = time;
@@ -95,6 +129,7 @@ public class Animation<T> {
      * @return whether or not {@link #getCurrentFrame()} returns a new frame
      */
     public boolean isNewFrame() {
+        if (this.timeline != null) return this.currentIndex != this.findIndex();
         return this.currentFrame != this.findCurrent();
     }
 
@@ -110,7 +145,13 @@ public class Animation<T> {
      *
      * @return the object of the current frame
      */
+    @SuppressWarnings("unchecked")
     public T getCurrentFrame() {
+        if (this.timeline != null) {
+            this.currentIndex = this.findIndex();
+            return (T) this.timeline.stackAt(this.currentIndex); // only timelines of ItemStacks exist
+        }
+
         this.currentFrame = this.findCurrent();
         return this.currentFrame.stack;
     }
@@ -123,7 +164,9 @@ public class Animation<T> {
     public Animation<T> clone() {
         Animation<T> anim = new Animation<>();
         anim.max = this.max;
+        anim.offset = this.offset;
         anim.frames.addAll(this.frames);
+        anim.timeline = this.timeline;
 
         return anim;
     }
@@ -140,7 +183,7 @@ public class Animation<T> {
         if (this.frames.size() == 1) return this.frames.get(0);
 
         if (this.start < 0) this.start = System.currentTimeMillis();
-        long diff = (System.currentTimeMillis() - this.start) % max;
+        long diff = (System.currentTimeMillis() - this.start + this.offset) % max;
 
         long time = 0;
         for (Frame frame : this.frames) {
@@ -151,4 +194,33 @@ public class Animation<T> {
         return this.frames.get(this.frames.size() - 1);
     }
 
+    /**
+     * Internal method.
+     *
+     * <p>Calculates the index of the current frame of the played {@link AnimationTimeline}.</p>
+     *
+     * @return the index of the current frame
+     */
+    private int findIndex() {
+        if (this.timeline.size() == 1) return 0;
+
+        if (this.start < 0) this.start = System.currentTimeMillis();
+        return this.timeline.indexAt(System.currentTimeMillis() - this.start + this.offset);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Stops playing the shared {@link AnimationTimeline}, copying its frames into this {@link Animation}. The
+     * copies are fresh {@link ItemStack}s, free to be modified.</p>
+     */
+    @SuppressWarnings("unchecked")
+    private void detach() {
+        AnimationTimeline timeline = this.timeline;
+        this.timeline = null;
+        this.currentIndex = -1;
+        for (int i = 0; i < timeline.size(); i++)
+            this.frame((T) timeline.getFrame(i).createStack(), timeline.getFrameTime(i));
+    }
+
 }
@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy.util;
+
+import com.github.xemiru.sponge.boxboy.Boxboy;
+import com.github.xemiru.sponge.boxboy.button.Button;
+
+/**
+ * The levels of detail at which {@link Animation}s are displayed by {@link Boxboy}.
+ *
+ * <p>When adaptive animations are enabled (see {@link Boxboy#setAdaptiveAnimations(boolean)}), Boxboy steps down
+ * through these levels while the server is struggling to keep up and back up once it recovers. Frames falling between
+ * two checks are skipped, as animations always display the frame current at the time they are checked.</p>
+ */
+public enum AnimationDetail {
+    /**
+     * Animations are checked for new frames every tick.
+     */
+    FULL(1, false),
+
+    /**
+     * Animations are checked for new frames every 2 ticks.
+     */
+    REDUCED(2, false),
+
+    /**
+     * Animations are checked for new frames every 4 ticks.
+     */
+    LOW(4, false),
+
+    /**
+     * Animations are checked for new frames every 10 ticks. Decorative animations (see {@link Button#isDecorative()}
+     * and {@link AnimatedMenuPattern#setDecorative(boolean)}) are paused.
+     */
+    MINIMAL(10, true);
+
+    private int interval;
+    private boolean decorativePaused;
+
+    AnimationDetail(int interval, boolean decorativePaused) {
+        this.interval = interval;
+        this.decorativePaused = decorativePaused;
+    }
+
+    /**
+     * @return how many ticks pass between each check for new animation frames
+     */
+    public int getFrameInterval() {
+        return this.interval;
+    }
+
+    /**
+     * @return whether or not decorative animations are paused at this level of detail
+     */
+    public boolean isDecorativePaused() {
+        return this.decorativePaused;
+    }
+
+    /**
+     * @return the next lower level of detail, or this one if it is already the lowest
+     */
+    public AnimationDetail lower() {
+        return this.ordinal() + 1 < values().length ? values()[this.ordinal() + 1] : this;
+    }
+
+    /**
+     * @return the next higher level of detail, or this one if it is already the highest
+     */
+    public AnimationDetail higher() {
+        return this.ordinal() > 0 ? values()[this.ordinal() - 1] : this;
+    }
+
+}
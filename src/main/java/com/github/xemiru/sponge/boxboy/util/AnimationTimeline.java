@@ -0,0 +1,286 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy.util;
+
+import com.github.xemiru.sponge.boxboy.button.Button;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * An immutable sequence of {@link ItemStackSnapshot} frames that can be shared by any number of {@link Animation}s.
+ *
+ * <p>Timelines are interned upon being built; building two timelines with the same frames and timings will return the
+ * same instance. Each {@link Animation} created through {@link #animate(long)} only holds its own timing state, making
+ * it cheap to give many {@link Button}s the same animation.</p>
+ */
+public final class AnimationTimeline {
+
+    // region statics
+
+    private static final Map<AnimationTimeline, WeakReference<AnimationTimeline>> interned;
+
+    static {
+        interned = new WeakHashMap<>();
+    }
+
+    /**
+     * Returns a new {@link Builder} for an {@link AnimationTimeline}.
+     *
+     * @return a new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the canonical instance of the given {@link AnimationTimeline}.</p>
+     *
+     * @param timeline the AnimationTimeline to intern
+     * @return the canonical AnimationTimeline equal to the one given
+     */
+    private static AnimationTimeline intern(AnimationTimeline timeline) {
+        synchronized (AnimationTimeline.interned) {
+            WeakReference<AnimationTimeline> ref = AnimationTimeline.interned.get(timeline);
+            AnimationTimeline existing = ref == null ? null : ref.get();
+            if (existing != null) return existing;
+
+            AnimationTimeline.interned.put(timeline, new WeakReference<>(timeline));
+            return timeline;
+        }
+    }
+
+    // endregion
+
+    /**
+     * Builder class for {@link AnimationTimeline}s.
+     */
+    public static class Builder {
+
+        private List<ItemStackSnapshot> frames;
+        private List<Long> times;
+
+        private Builder() {
+            this.frames = new ArrayList<>();
+            this.times = new ArrayList<>();
+        }
+
+        /**
+         * Adds a new frame to the {@link AnimationTimeline}.
+         *
+         * <p>The time specified is in milliseconds; see {@link Animation#frame(Object, long)}.</p>
+         *
+         * @param stack the ItemStack displayed during the frame
+         * @param time how long the frame is displayed, in milliseconds
+         * @return this Builder, for chaining
+         */
+        public Builder frame(ItemStack stack, long time) {
+            Objects.requireNonNull(stack);
+            return this.frame(stack.createSnapshot(), time);
+        }
+
+        /**
+         * Adds a new frame to the {@link AnimationTimeline}.
+         *
+         * <p>The time specified is in milliseconds; see {@link Animation#frame(Object, long)}.</p>
+         *
+         * @param snapshot the ItemStackSnapshot displayed during the frame
+         * @param time how long the frame is displayed, in milliseconds
+         * @return this Builder, for chaining
+         */
+        public Builder frame(ItemStackSnapshot snapshot, long time) {
+            Objects.requireNonNull(snapshot);
+            if (time <= 0) throw new IllegalArgumentException("Frame time must be positive");
+
+            this.frames.add(snapshot);
+            this.times.add(time);
+            return this;
+        }
+
+        /**
+         * Builds the {@link AnimationTimeline}, or returns an existing one with the same frames and timings.
+         *
+         * @return the AnimationTimeline
+         * @throws IllegalStateException if no frames have been provided to this Builder
+         */
+        public AnimationTimeline build() {
+            if (this.frames.isEmpty()) throw new IllegalStateException("No frames registered in timeline");
+            return AnimationTimeline.intern(new AnimationTimeline(this.frames, this.times));
+        }
+
+    }
+
+    private final ItemStackSnapshot[] frames;
+    private final DataContainer[] contents;
+    private final ItemStack[] stacks;
+    private final long[] ends;
+    private final int hash;
+
+    private AnimationTimeline(List<ItemStackSnapshot> frames, List<Long> times) {
+        int size = frames.size();
+        this.frames = frames.toArray(new ItemStackSnapshot[size]);
+        this.contents = new DataContainer[size];
+        this.stacks = new ItemStack[size];
+        this.ends = new long[size];
+
+        long end = 0;
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            end += times.get(i);
+            this.ends[i] = end;
+            this.contents[i] = this.frames[i].toContainer();
+            hash = 31 * (31 * hash + this.contents[i].hashCode()) + Long.hashCode(end);
+        }
+
+        this.hash = hash;
+    }
+
+    /**
+     * Returns the number of frames in this {@link AnimationTimeline}.
+     *
+     * @return the number of frames in this AnimationTimeline
+     */
+    public int size() {
+        return this.frames.length;
+    }
+
+    /**
+     * Returns the total length of this {@link AnimationTimeline}, in milliseconds.
+     *
+     * @return the length of this AnimationTimeline in milliseconds
+     */
+    public long getLength() {
+        return this.ends[this.ends.length - 1];
+    }
+
+    /**
+     * Returns the {@link ItemStackSnapshot} displayed during the given frame.
+     *
+     * @param index the index of the frame
+     * @return the ItemStackSnapshot of the frame
+     */
+    public ItemStackSnapshot getFrame(int index) {
+        return this.frames[index];
+    }
+
+    /**
+     * Returns how long the given frame is displayed, in milliseconds.
+     *
+     * @param index the index of the frame
+     * @return the time the frame is displayed in milliseconds
+     */
+    public long getFrameTime(int index) {
+        return index == 0 ? this.ends[0] : this.ends[index] - this.ends[index - 1];
+    }
+
+    /**
+     * Creates a new {@link Animation} playing this {@link AnimationTimeline} from its first frame.
+     *
+     * @return a new Animation of this AnimationTimeline
+     */
+    public Animation<ItemStack> animate() {
+        return this.animate(0);
+    }
+
+    /**
+     * Creates a new {@link Animation} playing this {@link AnimationTimeline}, starting the given number of
+     * milliseconds into it.
+     *
+     * <p>The {@link ItemStack}s the returned Animation returns are shared between all Animations of this timeline and
+     * must not be modified. Adding frames to the Animation gives it its own copy of this timeline's frames; the
+     * timeline itself never changes.</p>
+     *
+     * @param offset the time into the timeline to start at, in milliseconds
+     * @return a new Animation of this AnimationTimeline
+     */
+    public Animation<ItemStack> animate(long offset) {
+        return Animation.of(this, offset);
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the index of the frame displayed at the given time into this {@link AnimationTimeline}.</p>
+     *
+     * @param elapsed the time into the timeline, in milliseconds
+     * @return the index of the current frame
+     */
+    int indexAt(long elapsed) {
+        if (this.ends.length == 1) return 0;
+
+        long diff = elapsed % this.getLength();
+        for (int i = 0; i < this.ends.length; i++) {
+            if (diff <= this.ends[i]) return i;
+        }
+
+        return this.ends.length - 1;
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Returns the shared {@link ItemStack} of the given frame, creating it if it hasn't been yet.</p>
+     *
+     * @param index the index of the frame
+     * @return the ItemStack of the frame
+     */
+    ItemStack stackAt(int index) {
+        ItemStack stack = this.stacks[index];
+        if (stack == null) {
+            stack = this.frames[index].createStack();
+            this.stacks[index] = stack;
+        }
+
+        return stack;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AnimationTimeline)) return false;
+
+        AnimationTimeline other = (AnimationTimeline) o;
+        if (this.hash != other.hash || this.ends.length != other.ends.length) return false;
+        for (int i = 0; i < this.ends.length; i++) {
+            if (this.ends[i] != other.ends[i] || !this.contents[i].equals(other.contents[i])) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+}
@@ -23,13 +23,22 @@
  */
 package com.github.xemiru.sponge.boxboy.util;
 
+import com.github.xemiru.sponge.boxboy.Boxboy;
 import com.github.xemiru.sponge.boxboy.Menu;
+import com.github.xemiru.sponge.boxboy.TransactionJournal;
 import com.github.xemiru.sponge.boxboy.button.Button;
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.item.inventory.ItemStack;
 
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Provides information about an attempt to press a {@link Button} in a {@link Menu}.
@@ -41,8 +50,14 @@ public class ClickContext {
     private Player clicker;
     private ItemStack cursor;
     private ItemStack newCursor;
+    private int slot;
+    private boolean resumed;
 
     public ClickContext(ClickType type, Menu sourceMenu, Player clicker, ItemStack cursor) {
+        this(type, sourceMenu, clicker, cursor, -1);
+    }
+
+    public ClickContext(ClickType type, Menu sourceMenu, Player clicker, ItemStack cursor, int slot) {
         Objects.requireNonNull(type);
         Objects.requireNonNull(sourceMenu);
         Objects.requireNonNull(clicker);
@@ -52,6 +67,8 @@ public class ClickContext {
         this.sourceMenu = sourceMenu;
         this.clicker = clicker;
         this.newCursor = null;
+        this.slot = slot;
+        this.resumed = false;
     }
 
     /**
@@ -68,6 +85,13 @@ public class ClickContext {
         return this.sourceMenu;
     }
 
+    /**
+     * @return the index of the {@link Menu} slot associated with the action, or -1 if unknown
+     */
+    public int getSlot() {
+        return this.slot;
+    }
+
     /**
      * @return the {@link Player} associated with the action
      */
@@ -95,10 +119,133 @@ public class ClickContext {
      * <p>Setting this to null will not clear the item on the cursor. An ItemStack containing the AIR item type should
      * instead be provided for a similar effect.</p>
      *
+     * <p>When called from the continuation of an action started with
+     * {@link #runAsync(Supplier, ItemStack, Consumer, Consumer)}, the cursor is set right away through
+     * {@link Boxboy#setCursor(Player, ItemStack)}. If cursors can't be set on the server, the item is offered to the
+     * clicker's inventory instead; see {@link Boxboy#isCursorAvailable()}.</p>
+     *
      * @param item the item to set
      */
     public void setNewCursor(ItemStack item) {
         this.newCursor = item;
+        if (!this.resumed || item == null) return;
+
+        if (Boxboy.get().isCursorAvailable()) Boxboy.get().setCursor(this.clicker, item);
+        else if (!item.isEmpty()) this.clicker.getInventory().offer(item.copy());
+    }
+
+    /**
+     * Invalidates the slot associated with the action, such that only that slot of the source {@link Menu} is updated
+     * in the next tick.
+     *
+     * <p>If the slot is unknown, the entire Menu is invalidated instead.</p>
+     *
+     * @see Menu#invalidate(int)
+     */
+    public void invalidateSlot() {
+        if (this.slot < 0) this.sourceMenu.invalidate();
+        else this.sourceMenu.invalidate(this.slot);
+    }
+
+    /**
+     * Appends a record of this click to the open {@link TransactionJournal}, naming the clicker and the clicked slot.
+     *
+     * <p>Appending never waits on the disk. To act only once the record is safely on disk, pass the returned sequence
+     * number to {@link TransactionJournal#whenCommitted(long, Runnable)}.</p>
+     *
+     * @param type the type of the record
+     * @param amount the amount of the record
+     * @param reference the reference of the record
+     * @return the sequence number of the record
+     * @throws IllegalStateException if no journal is open
+     * @see Boxboy#openJournal(Path)
+     */
+    public long journal(int type, long amount, long reference) {
+        TransactionJournal journal = Boxboy.get().getJournal()
+            .orElseThrow(() -> new IllegalStateException("No transaction journal is open"));
+        return journal.append(this.clicker, this.slot, type, amount, reference);
+    }
+
+    /**
+     * Runs a task asynchronously, then passes its result to a continuation on the main thread.
+     *
+     * @param task the task to run asynchronously
+     * @param then the continuation receiving the task's result on the main thread
+     * @param <T> the type of the task's result
+     * @see #runAsync(Supplier, ItemStack, Consumer, Consumer)
+     */
+    public <T> void runAsync(Supplier<T> task, Consumer<T> then) {
+        this.runAsync(task, null, then, null);
+    }
+
+    /**
+     * Runs a task asynchronously, showing a pending item in the clicked slot until its result is passed to a
+     * continuation on the main thread.
+     *
+     * @param task the task to run asynchronously
+     * @param pending the item to show in the slot meanwhile, or null to leave the slot as is
+     * @param then the continuation receiving the task's result on the main thread
+     * @param <T> the type of the task's result
+     * @see #runAsync(Supplier, ItemStack, Consumer, Consumer)
+     */
+    public <T> void runAsync(Supplier<T> task, ItemStack pending, Consumer<T> then) {
+        this.runAsync(task, pending, then, null);
+    }
+
+    /**
+     * Runs a task asynchronously, showing a pending item in the clicked slot until its result is passed to a
+     * continuation on the main thread.
+     *
+     * <p>Click handlers run during the inventory event, on the main thread; slow work such as database queries should
+     * be moved to the task, which runs on {@link Boxboy#getAsyncExecutor()}. The continuation is then free to change
+     * the {@link Menu} and the cursor through this context. The clicker may have closed the Menu or left the server by
+     * then.</p>
+     *
+     * <p>The pending item is shown to the clicker alone, in place of the clicked {@link Button}, and clicking it does
+     * nothing. It is removed right before the continuation runs. It isn't shown on servers without overlays; see
+     * {@link Boxboy#isOverlayAvailable()}.</p>
+     *
+     * <p>If the task fails, the failure handler receives the exception on the main thread instead. Without a failure
+     * handler, the exception is rethrown on the main thread.</p>
+     *
+     * @param task the task to run asynchronously
+     * @param pending the item to show in the slot meanwhile, or null to leave the slot as is
+     * @param then the continuation receiving the task's result on the main thread
+     * @param failure the handler receiving the task's exception on the main thread, or null
+     * @param <T> the type of the task's result
+     */
+    public <T> void runAsync(Supplier<T> task, ItemStack pending, Consumer<T> then, Consumer<Throwable> failure) {
+        Objects.requireNonNull(task);
+        Objects.requireNonNull(then);
+
+        boolean overlaid = pending != null && this.slot >= 0 && Boxboy.get().isOverlayAvailable();
+        Button pendingButton = overlaid ? DummyButton.of(pending) : null;
+        Button previous = null;
+        if (pendingButton != null) {
+            previous = this.sourceMenu.getOverlay(this.clicker, this.slot).orElse(null);
+            this.sourceMenu.setOverlay(this.clicker, this.slot, pendingButton);
+        }
+
+        Button restored = previous;
+        Executor mainExecutor = Boxboy.get().getMainExecutor();
+        CompletableFuture.supplyAsync(task, Boxboy.get().getAsyncExecutor())
+            .whenComplete((result, error) -> mainExecutor.execute(() -> {
+                this.resumed = true;
+
+                // Leave the slot alone if something else has been overlaid on it since.
+                if (pendingButton != null && !this.sourceMenu.isDisposed()
+                    && this.sourceMenu.getOverlay(this.clicker, this.slot).orElse(null) == pendingButton)
+                    this.sourceMenu.setOverlay(this.clicker, this.slot, restored);
+
+                if (error == null) {
+                    then.accept(result);
+                    return;
+                }
+
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (failure != null) failure.accept(cause);
+                else throw new IllegalStateException("Asynchronous click action failed", cause);
+            }));
     }
 
 }
@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A histogram of latencies, recorded in nanoseconds.
+ *
+ * <p>Latencies are counted in logarithmic buckets, eight per power of two, so reported percentiles are within 12.5% of
+ * the actual values regardless of scale while the histogram itself stays small and fixed in size.</p>
+ *
+ * <p>Instances of this class are safe to record to and read from any thread.</p>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << LatencyHistogram.SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - LatencyHistogram.SUB_BUCKET_BITS) * LatencyHistogram.SUB_BUCKETS;
+
+    /**
+     * Returns the index of the bucket counting the provided value.
+     *
+     * @param value the value
+     * @return the bucket index
+     */
+    private static int indexOf(long value) {
+        if (value < LatencyHistogram.SUB_BUCKETS) return (int) value;
+
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - LatencyHistogram.SUB_BUCKET_BITS)) & (LatencyHistogram.SUB_BUCKETS - 1);
+        return (exp - LatencyHistogram.SUB_BUCKET_BITS + 1) * LatencyHistogram.SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value counted by the bucket at the provided index.
+     *
+     * @param index the bucket index
+     * @return the highest value of the bucket
+     */
+    private static long upperBoundOf(int index) {
+        if (index < LatencyHistogram.SUB_BUCKETS) return index;
+
+        int shift = index / LatencyHistogram.SUB_BUCKETS - 1;
+        long lower = (long) (LatencyHistogram.SUB_BUCKETS + index % LatencyHistogram.SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private long[] counts;
+    private long count;
+    private long max;
+
+    public LatencyHistogram() {
+        this.counts = new long[LatencyHistogram.BUCKETS];
+        this.count = 0;
+        this.max = 0;
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds; negative values are counted as 0
+     */
+    public synchronized void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+
+        this.counts[LatencyHistogram.indexOf(nanos)]++;
+        this.count++;
+        if (nanos > this.max) this.max = nanos;
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return the highest latency recorded, in nanoseconds
+     */
+    public synchronized long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Returns the latency below which the given percentage of recorded latencies fall.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the latency at the percentile in nanoseconds, or 0 if nothing was recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        if (this.count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) return Math.min(LatencyHistogram.upperBoundOf(i), this.max);
+        }
+
+        return this.max;
+    }
+
+    /**
+     * Returns the latency below which the given percentage of recorded latencies fall, in the given unit.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @param unit the unit to return the latency in
+     * @return the latency at the percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        return unit.convert(this.getPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Clears all recorded latencies.
+     */
+    public synchronized void reset() {
+        Arrays.fill(this.counts, 0);
+        this.count = 0;
+        this.max = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("LatencyHistogram[count=%d, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms]", this.count,
+            this.getPercentile(50) / 1e6, this.getPercentile(90) / 1e6, this.getPercentile(99) / 1e6, this.max / 1e6);
+    }
+
+}
@@ -39,14 +39,20 @@ public class OfferContext {
     private Menu sourceMenu;
     private Player clicker;
     private ItemStack item;
+    private int slot;
 
     public OfferContext(Menu sourceMenu, Player clicker, ItemStack item) {
+        this(sourceMenu, clicker, item, -1);
+    }
+
+    public OfferContext(Menu sourceMenu, Player clicker, ItemStack item, int slot) {
         Objects.requireNonNull(sourceMenu);
         Objects.requireNonNull(clicker);
 
         this.sourceMenu = sourceMenu;
         this.clicker = clicker;
         this.item = item;
+        this.slot = slot;
     }
 
     /**
@@ -56,6 +62,13 @@ public class OfferContext {
         return this.sourceMenu;
     }
 
+    /**
+     * @return the index of the {@link Menu} slot associated with the action, or -1 if unknown
+     */
+    public int getSlot() {
+        return this.slot;
+    }
+
     /**
      * @return the {@link Player} associated with the action
      */
@@ -70,4 +83,17 @@ public class OfferContext {
         return Optional.ofNullable(this.item);
     }
 
+    /**
+     * Invalidates the slot associated with the action, such that only that slot of the source {@link Menu} is updated
+     * in the next tick.
+     *
+     * <p>If the slot is unknown, the entire Menu is invalidated instead.</p>
+     *
+     * @see Menu#invalidate(int)
+     */
+    public void invalidateSlot() {
+        if (this.slot < 0) this.sourceMenu.invalidate();
+        else this.sourceMenu.invalidate(this.slot);
+    }
+
 }
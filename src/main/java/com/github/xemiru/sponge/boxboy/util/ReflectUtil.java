@@ -40,7 +40,7 @@ public class ReflectUtil {
         Class<?> src = Class.forName(sourceClass);
         Class[] params = new Class[parameterClasses.length];
         for (int i = 0; i < parameterClasses.length; i++)
-            params[i] = Class.forName(parameterClasses[i]);
+            params[i] = ReflectUtil.forName(parameterClasses[i]);
 
         for (String name : names) {
             try {
@@ -54,6 +54,29 @@ public class ReflectUtil {
         throw new NoSuchMethodException(Arrays.toString(names));
     }
 
+    private static Class<?> forName(String name) throws ClassNotFoundException {
+        switch (name) {
+            case "boolean":
+                return boolean.class;
+            case "byte":
+                return byte.class;
+            case "short":
+                return short.class;
+            case "int":
+                return int.class;
+            case "long":
+                return long.class;
+            case "float":
+                return float.class;
+            case "double":
+                return double.class;
+            case "char":
+                return char.class;
+            default:
+                return Class.forName(name);
+        }
+    }
+
     public static Field getDeclaredField(String sourceClass, String... names)
         throws ClassNotFoundException, NoSuchFieldException {
         Class<?> src = Class.forName(sourceClass);
@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy.util;
+
+import com.github.xemiru.sponge.boxboy.button.Button;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded, server-wide cache of the {@link ItemStack}s used to represent {@link Button}s.
+ *
+ * <p>Interning a representative returns a shared instance equal in content to the one given, so identical items used
+ * by many Buttons (e.g. filler panes) are only held once. Interned ItemStacks are shared and <b>must not be
+ * modified</b>. When the cache is full, the least recently interned content is evicted; Buttons already holding the
+ * evicted instance keep working normally.</p>
+ */
+public class RepresentativeCache {
+
+    /**
+     * Data bag class for cached representatives.
+     */
+    private static class Entry {
+
+        private ItemStackSnapshot snapshot;
+        private ItemStack stack;
+
+    }
+
+    private static int maximumSize;
+    private static LinkedHashMap<DataContainer, Entry> entries;
+    private static Map<ItemStack, Entry> stacks;
+
+    static {
+        RepresentativeCache.maximumSize = 1024;
+        RepresentativeCache.stacks = new IdentityHashMap<>();
+        RepresentativeCache.entries = new LinkedHashMap<DataContainer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DataContainer, Entry> eldest) {
+                if (this.size() <= RepresentativeCache.maximumSize) return false;
+
+                RepresentativeCache.stacks.remove(eldest.getValue().stack);
+                return true;
+            }
+        };
+    }
+
+    private RepresentativeCache() {
+    }
+
+    /**
+     * Returns the shared {@link ItemStack} equal in content to the one given.
+     *
+     * @param stack the ItemStack to intern
+     * @return the shared ItemStack
+     */
+    public static ItemStack intern(ItemStack stack) {
+        return RepresentativeCache.lookup(stack).stack;
+    }
+
+    /**
+     * Returns the shared {@link ItemStackSnapshot} equal in content to the given {@link ItemStack}.
+     *
+     * @param stack the ItemStack to intern
+     * @return the shared ItemStackSnapshot
+     */
+    public static ItemStackSnapshot snapshot(ItemStack stack) {
+        return RepresentativeCache.lookup(stack).snapshot;
+    }
+
+    /**
+     * Returns whether or not the given {@link ItemStack} is a shared instance currently held by this cache.
+     *
+     * <p>As interned ItemStacks are never modified, two references to the same interned instance are guaranteed to
+     * hold the same content.</p>
+     *
+     * @param stack the ItemStack to query
+     * @return if the ItemStack is interned
+     */
+    public static synchronized boolean isInterned(ItemStack stack) {
+        return RepresentativeCache.stacks.containsKey(stack);
+    }
+
+    /**
+     * Returns the number of distinct representatives currently held by this cache.
+     *
+     * @return the size of this cache
+     */
+    public static synchronized int size() {
+        return RepresentativeCache.entries.size();
+    }
+
+    /**
+     * Returns the maximum number of distinct representatives held by this cache.
+     *
+     * @return the maximum size of this cache
+     */
+    public static synchronized int getMaximumSize() {
+        return RepresentativeCache.maximumSize;
+    }
+
+    /**
+     * Sets the maximum number of distinct representatives held by this cache, evicting the least recently interned
+     * ones if there are currently more.
+     *
+     * @param size the new maximum size of this cache
+     */
+    public static synchronized void setMaximumSize(int size) {
+        if (size < 1) throw new IllegalArgumentException("Cache size must be at least 1");
+        RepresentativeCache.maximumSize = size;
+
+        while (RepresentativeCache.entries.size() > size) {
+            Map.Entry<DataContainer, Entry> eldest = RepresentativeCache.entries.entrySet().iterator().next();
+            RepresentativeCache.stacks.remove(eldest.getValue().stack);
+            RepresentativeCache.entries.remove(eldest.getKey());
+        }
+    }
+
+    /**
+     * Internal method.
+     *
+     * <p>Retrieves the cache entry for the content of the given {@link ItemStack}, creating it if needed.</p>
+     *
+     * @param stack the ItemStack to look up
+     * @return the cache entry
+     */
+    private static Entry lookup(ItemStack stack) {
+        Objects.requireNonNull(stack);
+
+        // The given stack may itself be interned already.
+        synchronized (RepresentativeCache.class) {
+            Entry interned = RepresentativeCache.stacks.get(stack);
+            if (interned != null) return interned;
+        }
+
+        ItemStackSnapshot snapshot = stack.createSnapshot();
+        DataContainer key = snapshot.toContainer();
+
+        synchronized (RepresentativeCache.class) {
+            Entry entry = RepresentativeCache.entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entry.snapshot = snapshot;
+                entry.stack = snapshot.createStack();
+
+                RepresentativeCache.entries.put(key, entry);
+                RepresentativeCache.stacks.put(entry.stack, entry);
+            }
+
+            return entry;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.util.ClickContext;
+import com.github.xemiru.sponge.boxboy.util.ClickType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AsyncClickTest {
+
+    private Boxboy boxboy;
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+        this.boxboy.setAsyncExecutor(Runnable::run);
+    }
+
+    @After
+    public void cleanup() {
+        new ArrayList<>(Menu.menus).forEach(Menu::dispose);
+        Menu.menus.clear();
+    }
+
+    @Test
+    public void resumedCursorsFallBackToTheInventory() {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Headless"));
+        Player player = Headless.player(UUID.randomUUID(), "Buyer");
+        ClickContext context = new ClickContext(ClickType.PRIMARY, menu, player, null, 0);
+        context.runAsync(() -> Headless.item(ItemTypes.DIAMOND), context::setNewCursor);
+
+        assertFalse(this.boxboy.isCursorAvailable());
+        this.boxboy.tick();
+
+        ItemStack given = SlotLayout.of(player.getInventory()).get(0).peek().orElseThrow(AssertionError::new);
+        assertEquals(ItemTypes.DIAMOND, given.getType());
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.ActionButton;
+import com.github.xemiru.sponge.boxboy.util.ClickContext;
+import com.github.xemiru.sponge.boxboy.util.ClickType;
+import com.github.xemiru.sponge.boxboy.util.LatencyHistogram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ClickLatencyTest {
+
+    private Boxboy boxboy;
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+    }
+
+    @After
+    public void cleanup() {
+        Menu.viewerMap.forEach((uid, menu) -> {
+            menu.removeViewer(uid);
+            this.boxboy.forgetViewer(uid);
+        });
+        Menu.viewerMap.clear();
+        new ArrayList<>(Menu.menus).forEach(Menu::dispose);
+        Menu.menus.clear();
+    }
+
+    @Test
+    public void onlyClicksChangingTheMenuAreTimed() {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Headless"));
+        menu.setName("Clicks");
+        menu.setButton(0, ActionButton.of(Headless.item(ItemTypes.STONE), context -> {}));
+        menu.setButton(1, ActionButton.of(Headless.item(ItemTypes.DIRT), ClickContext::invalidateSlot));
+
+        UUID uid = UUID.randomUUID();
+        Player player = Headless.player(uid, "Clicker");
+        Menu.viewerMap.put(uid, menu);
+        menu.addViewer(uid);
+        this.boxboy.addSimulatedPlayer(player);
+        this.boxboy.tick();
+
+        // Invalidated by something else; the click itself changes nothing.
+        menu.invalidate();
+        this.boxboy.dispatchClick(new ClickContext(ClickType.PRIMARY, menu, player, null, 0), System.nanoTime());
+        this.boxboy.tick();
+        assertFalse(this.boxboy.getClickLatency("Clicks").isPresent());
+
+        this.boxboy.dispatchClick(new ClickContext(ClickType.PRIMARY, menu, player, null, 1), System.nanoTime());
+        this.boxboy.tick();
+        assertEquals(1, this.boxboy.getClickLatency("Clicks").map(LatencyHistogram::getCount).orElse(0L).longValue());
+    }
+
+}
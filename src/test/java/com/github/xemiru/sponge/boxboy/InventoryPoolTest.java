@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import org.junit.Test;
+import org.spongepowered.api.item.inventory.InventoryArchetypes;
+import org.spongepowered.api.text.Text;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InventoryPoolTest {
+
+    private static InventoryPool.Key key(String title) {
+        return new InventoryPool.Key(InventoryArchetypes.CHEST, 1, Text.of(title));
+    }
+
+    private static InventoryPool.Entry entry() {
+        return new InventoryPool.Entry(Headless.inventory(9), new AtomicReference<>());
+    }
+
+    @Test
+    public void eachKindIsCapped() {
+        InventoryPool pool = new InventoryPool(2, 8);
+        assertTrue(pool.release(key("Shop"), entry()));
+        assertTrue(pool.release(key("Shop"), entry()));
+        assertFalse(pool.release(key("Shop"), entry()));
+
+        assertEquals(2, pool.size(key("Shop")));
+        assertNotNull(pool.lease(key("Shop")));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedKindsAreDroppedOnceFull() {
+        InventoryPool pool = new InventoryPool(4, 4);
+        pool.release(key("Shop"), entry());
+        pool.release(key("Shop"), entry());
+        pool.release(key("Alice's bank"), entry());
+        pool.release(key("Bob's bank"), entry());
+
+        // Shop is used again, leaving Alice's bank the least recently used.
+        pool.release(key("Shop"), entry());
+        pool.lease(key("Shop"));
+        pool.release(key("Carol's bank"), entry());
+        pool.release(key("Dave's bank"), entry());
+
+        assertEquals(4, pool.size());
+        assertEquals(0, pool.size(key("Alice's bank")));
+        assertEquals(0, pool.size(key("Bob's bank")));
+        assertEquals(2, pool.size(key("Shop")));
+        assertEquals(1, pool.size(key("Dave's bank")));
+    }
+
+    @Test
+    public void loweringTheLimitDropsIdleInventories() {
+        InventoryPool pool = new InventoryPool(4, 8);
+        pool.release(key("Shop"), entry());
+        pool.release(key("Bank"), entry());
+        pool.release(key("Bank"), entry());
+
+        pool.setMaximumTotal(2);
+        assertEquals(2, pool.size());
+        assertEquals(0, pool.size(key("Shop")));
+
+        pool.setMaximumSize(1);
+        assertEquals(1, pool.size());
+        assertNotNull(pool.lease(key("Bank")));
+        assertNull(pool.lease(key("Bank")));
+        assertEquals(0, pool.size());
+    }
+
+}
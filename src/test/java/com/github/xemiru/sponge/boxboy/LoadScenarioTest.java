@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoadScenarioTest {
+
+    private Boxboy boxboy;
+
+    private static Inventory slot(Inventory inventory, int index) {
+        int i = 0;
+        for (Inventory slot : inventory.slots()) if (i++ == index) return slot;
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+    }
+
+    @After
+    public void cleanup() {
+        Menu.viewerMap.forEach((uid, menu) -> {
+            menu.removeViewer(uid);
+            this.boxboy.forgetViewer(uid);
+        });
+        Menu.viewerMap.clear();
+        new ArrayList<>(Menu.menus).forEach(Menu::dispose);
+        Menu.menus.clear();
+    }
+
+    @Test
+    public void defaultScenarioRunsHeadless() {
+        String report = LoadScenario.defaults(Headless::item)
+            .steps(1, 8)
+            .ticksPerStep(20)
+            .warmupTicks(2)
+            .clickRate(20)
+            .runHeadless(this.boxboy);
+
+        assertTrue(report, report.contains("\"headless\":true"));
+        assertTrue(report, report.contains("\"players\":1,"));
+        assertTrue(report, report.contains("\"players\":8,"));
+        assertTrue(report, report.contains("\"clickNanos\":{"));
+        assertFalse(report, report.contains("\"clicks\":0,"));
+        assertTrue(Menu.viewerMap.isEmpty());
+    }
+
+    @Test
+    public void menusRenderToFakeInventories() {
+        ExtendedMenu menu = this.boxboy.createExtendedMenu(1, Text.of("Headless"));
+        menu.setButton(4, DummyButton.of(Headless.item(ItemTypes.STONE)));
+        menu.setButton(9, DummyButton.of(Headless.item(ItemTypes.DIRT, 3)));
+
+        UUID uid = UUID.randomUUID();
+        Player player = Headless.player(uid, "Viewer");
+        Menu.viewerMap.put(uid, menu);
+        menu.addViewer(uid);
+        this.boxboy.addSimulatedPlayer(player);
+        this.boxboy.tick();
+
+        ItemStack top = slot(menu.getInventory(), 4).peek().orElseThrow(AssertionError::new);
+        ItemStack bottom = slot(player.getInventory(), 0).peek().orElseThrow(AssertionError::new);
+        assertEquals(ItemTypes.STONE, top.getType());
+        assertEquals(ItemTypes.DIRT, bottom.getType());
+        assertEquals(3, bottom.getQuantity());
+        assertFalse(slot(menu.getInventory(), 0).peek().isPresent());
+    }
+
+    @Test
+    public void mainThreadTasksRunOnTheNextTick() {
+        boolean[] ran = new boolean[1];
+        this.boxboy.getMainExecutor().execute(() -> ran[0] = true);
+        assertFalse(ran[0]);
+
+        this.boxboy.tick();
+        assertTrue(ran[0]);
+    }
+
+}
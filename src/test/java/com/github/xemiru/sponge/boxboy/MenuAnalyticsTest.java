@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
+import com.github.xemiru.sponge.boxboy.util.ClickType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.text.Text;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MenuAnalyticsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Boxboy boxboy;
+    private Player player;
+
+    private List<String[]> lines(MenuAnalytics analytics) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(analytics.getDirectory())) {
+            for (Path file : files.sorted().collect(Collectors.toList()))
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) lines.add(line.split("\t", -1));
+        }
+
+        return lines;
+    }
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+        this.player = Headless.player(UUID.randomUUID(), "Analyst");
+    }
+
+    @Test
+    public void eventsAreWrittenInPublishOrder() throws IOException {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Analytics"));
+        menu.setName("Shop");
+        DummyButton button = DummyButton.of(Headless.item(ItemTypes.STONE));
+        menu.setButton(2, button);
+
+        MenuAnalytics analytics = new MenuAnalytics(this.folder.newFolder().toPath(), 8);
+        analytics.open(menu, this.player);
+        analytics.click(menu, this.player, 2, button, ClickType.PRIMARY);
+        analytics.mark(this.player, menu, "checkout");
+        analytics.close(menu, this.player);
+        analytics.stop();
+
+        List<String[]> lines = this.lines(analytics);
+        assertEquals(5, lines.size());
+        assertEquals("time", lines.get(0)[0]);
+        String uid = this.player.getUniqueId().toString();
+        for (String[] line : lines.subList(1, 5)) {
+            assertEquals(7, line.length);
+            assertEquals(uid, line[2]);
+            assertEquals("Shop", line[3]);
+        }
+
+        assertEquals("open", lines.get(1)[1]);
+        assertEquals("click", lines.get(2)[1]);
+        assertEquals("2", lines.get(2)[4]);
+        assertEquals(DummyButton.class.getName(), lines.get(2)[5]);
+        assertEquals("PRIMARY", lines.get(2)[6]);
+        assertEquals("mark", lines.get(3)[1]);
+        assertEquals("checkout", lines.get(3)[6]);
+        assertEquals("close", lines.get(4)[1]);
+        assertFalse(lines.get(4)[6].isEmpty());
+        assertEquals(4, analytics.getWrittenCount());
+        assertEquals(0, analytics.getDroppedCount());
+        menu.dispose();
+    }
+
+    @Test
+    public void fullRingBufferDropsEvents() throws IOException {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Analytics"));
+        MenuAnalytics analytics = new MenuAnalytics(this.folder.newFolder().toPath(), 4);
+
+        // The writer only wakes up every 250ms; a burst this size can't all fit.
+        for (int i = 0; i < 1000; i++) analytics.click(menu, this.player, i % 9, null, ClickType.PRIMARY);
+        analytics.stop();
+
+        assertTrue(analytics.getDroppedCount() > 0);
+        assertEquals(1000, analytics.getWrittenCount() + analytics.getDroppedCount());
+        assertEquals(analytics.getWrittenCount() + 1, this.lines(analytics).size());
+        assertFalse(analytics.getError().isPresent());
+        menu.dispose();
+    }
+
+    @Test
+    public void renamingMenusReinternsTheirName() throws IOException {
+        MenuAnalytics analytics = this.boxboy.startAnalytics(this.folder.newFolder().toPath());
+        Menu menu = this.boxboy.createMenu(1, Text.of("Analytics"));
+        int unnamed = analytics.symbolOf(menu);
+        assertEquals(unnamed, analytics.symbol("Menu"));
+
+        menu.setName("Renamed");
+        assertEquals(analytics.symbol("Renamed"), analytics.symbolOf(menu));
+        menu.setName(null);
+        assertEquals(unnamed, analytics.symbolOf(menu));
+        this.boxboy.stopAnalytics();
+        menu.dispose();
+    }
+
+    @Test
+    public void nothingIsInternedWhileStopped() {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Analytics"));
+        menu.setName("Shop");
+        menu.setButton(0, DummyButton.of(Headless.item(ItemTypes.STONE)));
+        assertEquals(0, menu.analyticsSymbol);
+        menu.dispose();
+    }
+
+    @Test
+    public void eachRunHasItsOwnSymbols() throws IOException {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Analytics"));
+        menu.setName("Shop");
+
+        // Per-player names use up the first run's table, leaving the Shop unnamed.
+        MenuAnalytics first = this.boxboy.startAnalytics(this.folder.newFolder().toPath());
+        for (int i = 0; i < MenuAnalytics.MAX_SYMBOLS; i++) first.symbol("Bank of player " + i);
+        first.open(menu, this.player);
+        this.boxboy.stopAnalytics();
+        assertEquals("(other)", this.lines(first).get(1)[3]);
+
+        MenuAnalytics second = this.boxboy.startAnalytics(this.folder.newFolder().toPath());
+        second.open(menu, this.player);
+        this.boxboy.stopAnalytics();
+        assertEquals("Shop", this.lines(second).get(1)[3]);
+        menu.dispose();
+    }
+
+}
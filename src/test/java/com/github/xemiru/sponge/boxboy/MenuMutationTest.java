@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MenuMutationTest {
+
+    private Boxboy boxboy;
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+    }
+
+    @After
+    public void cleanup() {
+        new ArrayList<>(Menu.menus).forEach(Menu::dispose);
+        Menu.menus.clear();
+    }
+
+    @Test
+    public void failingMutationsDontStopTheOthers() {
+        Menu broken = this.boxboy.createMenu(1, Text.of("Broken"));
+        Menu other = this.boxboy.createMenu(1, Text.of("Other"));
+        broken.submit(menu -> {
+            throw new IllegalStateException("mutation failed on purpose");
+        });
+        broken.submitButton(0, DummyButton.of(Headless.item(ItemTypes.STONE)));
+        other.submitButton(0, DummyButton.of(Headless.item(ItemTypes.DIRT)));
+
+        this.boxboy.tick();
+        assertTrue(broken.getButton(0).isPresent());
+        assertTrue(other.getButton(0).isPresent());
+    }
+
+    @Test
+    public void changesCountedFromManyThreadsAreNotLost() throws InterruptedException {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Contended"));
+        long before = menu.getChangeCount();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) menu.invalidate();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) thread.join();
+        assertEquals(before + 40000, menu.getChangeCount());
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MenuRenderTest {
+
+    private Boxboy boxboy;
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+    }
+
+    @After
+    public void cleanup() {
+        new ArrayList<>(Menu.menus).forEach(Menu::dispose);
+        Menu.menus.clear();
+    }
+
+    @Test
+    public void equalRepresentativesAreShared() {
+        DummyButton first = DummyButton.of(Headless.item(ItemTypes.STONE));
+        DummyButton second = DummyButton.of(Headless.item(ItemTypes.STONE));
+        assertSame(first.getRepresentative(), second.getRepresentative());
+    }
+
+    @Test
+    public void slotsStillHoldingTheirInternedRepresentativeAreSkipped() {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Headless"));
+        menu.setButton(4, DummyButton.of(Headless.item(ItemTypes.STONE)));
+        assertEquals(1, menu.render());
+
+        // Cleared behind Boxboy's back; rendering again trusts the interned instance it wrote last.
+        Inventory slot = SlotLayout.of(menu.getInventory()).get(4);
+        slot.clear();
+        menu.invalidate();
+        assertEquals(0, menu.render());
+        assertFalse(slot.peek().isPresent());
+
+        menu.updateInventory();
+        assertTrue(slot.peek().isPresent());
+        assertEquals(ItemTypes.STONE, slot.peek().get().getType());
+    }
+
+    @Test
+    public void replacedRepresentativesAreWritten() {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Headless"));
+        menu.setButton(4, DummyButton.of(Headless.item(ItemTypes.STONE)));
+        menu.render();
+
+        menu.setButton(4, DummyButton.of(Headless.item(ItemTypes.DIRT)));
+        assertEquals(1, menu.render());
+        assertEquals(ItemTypes.DIRT, SlotLayout.of(menu.getInventory()).get(4).peek().get().getType());
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionJournalTest {
+
+    private static final UUID PLAYER = new UUID(0x1234, 0x5678);
+    private static final int SEGMENT = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Player player() {
+        return Headless.player(TransactionJournalTest.PLAYER, "Buyer");
+    }
+
+    private static TransactionJournal open(Path directory) throws IOException {
+        return new TransactionJournal(directory, TransactionJournalTest.SEGMENT, Runnable::run);
+    }
+
+    private static void append(Path directory, int first, int last) throws IOException {
+        try (TransactionJournal journal = TransactionJournalTest.open(directory)) {
+            Player player = TransactionJournalTest.player();
+            for (int i = first; i <= last; i++) assertEquals(i, journal.append(player, i % 54, 1, i * 10, -i));
+        }
+    }
+
+    private static List<JournalRecord> read(Path directory) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        try (JournalReader reader = TransactionJournal.read(directory)) {
+            reader.forEachRemaining(records::add);
+        }
+
+        return records;
+    }
+
+    private static Path segment(Path directory, long first) {
+        return directory.resolve(String.format("journal-%020d.bxbj", first));
+    }
+
+    private static long offset(int index) {
+        return TransactionJournal.HEADER_SIZE + (long) index * TransactionJournal.RECORD_SIZE;
+    }
+
+    @Test
+    public void recordsAreReadBackAcrossSegments() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        append(directory, 1, 20);
+
+        List<JournalRecord> records = read(directory);
+        assertEquals(20, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            JournalRecord record = records.get(i);
+            assertEquals(i + 1, record.getSequence());
+            assertEquals(PLAYER, record.getPlayer());
+            assertEquals((i + 1) % 54, record.getSlot());
+            assertEquals(1, record.getType());
+            assertEquals((i + 1) * 10, record.getAmount());
+            assertEquals(-(i + 1), record.getReference());
+        }
+
+        assertEquals(3, TransactionJournal.segments(directory).size());
+    }
+
+    @Test
+    public void reopeningContinuesTheSequence() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        append(directory, 1, 12);
+        append(directory, 13, 17);
+
+        assertEquals(17, read(directory).size());
+    }
+
+    @Test
+    public void tornRecordEndsTheJournal() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        append(directory, 1, 14);
+        try (RandomAccessFile file = new RandomAccessFile(segment(directory, 9).toFile(), "rw")) {
+            file.seek(offset(3) + 30);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        assertEquals(11, read(directory).size());
+        try (TransactionJournal journal = open(directory)) {
+            assertEquals(11, journal.getAppendedSequence());
+        }
+    }
+
+    @Test
+    public void recordsPastAGapAreNotRecovered() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        append(directory, 1, 7);
+
+        // The page holding record 3 never reached the disk, but the ones after it did.
+        try (RandomAccessFile file = new RandomAccessFile(segment(directory, 1).toFile(), "rw")) {
+            file.seek(offset(2));
+            file.write(new byte[TransactionJournal.RECORD_SIZE]);
+        }
+
+        append(directory, 3, 3);
+        List<JournalRecord> records = read(directory);
+        assertEquals(3, records.size());
+        assertEquals(3, records.get(2).getSequence());
+    }
+
+    @Test
+    public void truncatedSegmentIsRecovered() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        append(directory, 1, 13);
+        try (RandomAccessFile file = new RandomAccessFile(segment(directory, 9).toFile(), "rw")) {
+            file.setLength(offset(2) + TransactionJournal.RECORD_SIZE / 2);
+        }
+
+        assertEquals(10, read(directory).size());
+        append(directory, 11, 20);
+        assertEquals(20, read(directory).size());
+    }
+
+    @Test
+    public void segmentWithoutHeaderIsDropped() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        append(directory, 1, 8);
+        Files.write(segment(directory, 9), new byte[TransactionJournal.HEADER_SIZE]);
+
+        assertEquals(8, read(directory).size());
+        append(directory, 9, 9);
+        assertEquals(9, read(directory).size());
+    }
+
+    @Test
+    public void waitingActionsRunOnceCommitted() throws Exception {
+        try (TransactionJournal journal = open(this.folder.getRoot().toPath())) {
+            CountDownLatch latch = new CountDownLatch(1);
+            journal.whenCommitted(journal.append(player(), 0, 1, 1, 1), latch::countDown);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void committerFailureIsReportedToWaitingActions() throws Exception {
+        AtomicReference<Boolean> thrown = new AtomicReference<>(false);
+        TransactionJournal journal = new TransactionJournal(this.folder.getRoot().toPath(), SEGMENT, task -> {
+            // The first action handed over blows up on the committer thread.
+            if (thrown.compareAndSet(false, true)) throw new IllegalStateException("executor rejected the action");
+            task.run();
+        });
+
+        CountDownLatch latch = new CountDownLatch(1);
+        journal.whenCommitted(journal.append(player(), 0, 1, 1, 1), () -> {
+        });
+        journal.whenCommitted(Long.MAX_VALUE, () -> fail("never committed"), e -> latch.countDown());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(journal.getError().isPresent());
+        try {
+            journal.close();
+            fail("closed a failed journal cleanly");
+        } catch (IOException expected) {
+            // the error is thrown again
+        }
+    }
+
+    @Test
+    public void failureIsReportedToWaitingActions() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        TransactionJournal journal = open(directory);
+
+        // Occupying the next segment's file makes preparing it fail.
+        Files.createFile(segment(directory, 1 + SEGMENT));
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<IOException> error = new AtomicReference<>();
+        journal.whenCommitted(Long.MAX_VALUE, () -> fail("never committed"), e -> {
+            error.set(e);
+            latch.countDown();
+        });
+        for (int i = 0; i < SEGMENT / 2; i++) journal.append(player(), 0, 1, 1, 1);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(error.get(), journal.getError().orElse(null));
+        try {
+            journal.append(player(), 0, 1, 1, 1);
+            fail("appended to a failed journal");
+        } catch (IllegalStateException expected) {
+            // failed journals accept no more records
+        }
+
+        try {
+            journal.close();
+            fail("closed a failed journal cleanly");
+        } catch (IOException expected) {
+            // the error is thrown again
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ViewerBudgetTest {
+
+    private Boxboy boxboy;
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+    }
+
+    @After
+    public void cleanup() {
+        Menu.viewerMap.forEach((uid, menu) -> {
+            menu.removeViewer(uid);
+            this.boxboy.forgetViewer(uid);
+        });
+        Menu.viewerMap.clear();
+        new ArrayList<>(Menu.menus).forEach(Menu::dispose);
+        Menu.menus.clear();
+    }
+
+    @Test
+    public void rendersCountOnlyChangedSlots() {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Headless"));
+        menu.setButton(4, DummyButton.of(Headless.item(ItemTypes.STONE)));
+        assertEquals(1, menu.render());
+
+        menu.invalidate();
+        assertEquals(0, menu.render());
+
+        menu.setButton(4, null);
+        menu.setButton(5, DummyButton.of(Headless.item(ItemTypes.DIRT)));
+        assertEquals(2, menu.render());
+    }
+
+    @Test
+    public void rendersForNewViewersAreCharged() {
+        this.boxboy.setViewerBudget(5);
+        Menu menu = this.boxboy.createMenu(1, Text.of("Headless"));
+
+        UUID uid = UUID.randomUUID();
+        Menu.viewerMap.put(uid, menu);
+        menu.addViewer(uid);
+        this.boxboy.addSimulatedPlayer(Headless.player(uid, "Watcher"));
+        this.boxboy.tick();
+        assertTrue(this.boxboy.isWithinBudget(uid));
+
+        // Opening the Menu for someone else renders it right away, on the watcher's budget too.
+        for (int i = 0; i < 9; i++) menu.setButton(i, DummyButton.of(Headless.item(ItemTypes.STONE)));
+        Player opener = Headless.player(UUID.randomUUID(), "Opener");
+        this.boxboy.addSimulatedPlayer(opener);
+        this.boxboy.queueOpen(opener, menu);
+        this.boxboy.tick();
+
+        assertFalse(this.boxboy.isWithinBudget(uid));
+        assertEquals(0, this.boxboy.getRenderBacklog());
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.text.Text;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WatchdogTest {
+
+    private Boxboy boxboy;
+    private List<String> warnings;
+    private Watchdog watchdog;
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+        this.warnings = new ArrayList<>();
+
+        Logger logger = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] { Logger.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("warn")) this.warnings.add((String) args[0]);
+                return method.getReturnType() == boolean.class ? false : null;
+            });
+        this.watchdog = new Watchdog(logger);
+    }
+
+    @After
+    public void cleanup() {
+        this.watchdog.setSampling(false);
+        new ArrayList<>(Menu.menus).forEach(Menu::dispose);
+        Menu.menus.clear();
+    }
+
+    @Test
+    public void slowHandlersAreReportedWithASample() throws InterruptedException {
+        Menu menu = this.boxboy.createMenu(1, Text.of("Headless"));
+        DummyButton button = DummyButton.of(Headless.item(ItemTypes.STONE));
+        this.watchdog.setClickThreshold(1);
+        this.watchdog.setSampling(true);
+
+        long start = this.watchdog.begin(false);
+        Thread.sleep(50);
+        this.watchdog.endClick(menu, 0, button, start);
+
+        // Handlers within the threshold aren't reported.
+        this.watchdog.setClickThreshold(1000);
+        this.watchdog.endClick(menu, 0, button, this.watchdog.begin(false));
+
+        assertEquals(2, this.watchdog.getClickCount());
+        assertEquals(1, this.watchdog.getSlowClickCount());
+        assertEquals(1, this.warnings.size());
+        assertTrue(this.warnings.get(0), this.warnings.get(0).contains("main thread was at:"));
+        assertTrue(this.warnings.get(0), this.warnings.get(0).contains("WatchdogTest.slowHandlersAreReportedWithASample"));
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy;
+
+import com.github.xemiru.sponge.boxboy.button.Button;
+import com.github.xemiru.sponge.boxboy.button.DummyButton;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.text.Text;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorkloadReplayTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Boxboy boxboy;
+
+    @Before
+    public void boot() {
+        this.boxboy = Headless.boot(LoggerFactory.getLogger("Boxboy"));
+    }
+
+    @Test
+    public void varIntsRoundTrip() throws IOException {
+        long[] values = {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, 1L << 42, Long.MAX_VALUE, -1};
+        int[] sizes = {1, 1, 1, 2, 2, 2, 3, 5, 7, 9, 10};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < values.length; i++) {
+            int before = out.size();
+            WorkloadRecorder.writeVarInt(out, values[i]);
+            assertEquals("size of " + values[i], sizes[i], out.size() - before);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) assertEquals(value, WorkloadReplay.readVarLong(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void overlongVarIntsAreRejected() throws IOException {
+        byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0xFF);
+        WorkloadReplay.readVarLong(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void capturedButtonChangesReplayAsFreshButtons() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("capture.bxbw");
+        Menu captured = this.boxboy.createMenu(1, Text.of("Captured"));
+        captured.setName("Shop");
+        UUID uid = UUID.randomUUID();
+
+        this.boxboy.startCapture(file);
+        this.boxboy.getRecorder().open(captured, uid);
+        captured.addViewer(uid);
+        this.boxboy.tick();
+        captured.setButton(3, DummyButton.of(Headless.item(ItemTypes.DIRT)));
+        captured.invalidate();
+        captured.invalidate();
+        this.boxboy.tick();
+        this.boxboy.getRecorder().close(captured, uid);
+        captured.removeViewer(uid);
+        captured.dispose(); // releasing the Menu clears its slots without recording them
+        this.boxboy.stopCapture();
+
+        Button original = DummyButton.of(Headless.item(ItemTypes.STONE));
+        Menu[] replayed = new Menu[1];
+        Button[] seen = new Button[1];
+        WorkloadReplay replay = WorkloadReplay.load(file);
+        replay.start(type -> {
+            replayed[0] = this.boxboy.createMenu(1, Text.of(type));
+            replayed[0].setButton(3, original);
+            return replayed[0];
+        });
+
+        while (!replay.isFinished()) {
+            this.boxboy.tick();
+            if (!replayed[0].isDisposed()) seen[0] = replayed[0].getButton(3).orElse(null);
+        }
+
+        // MENU, OPEN, TYPE, BUTTON, INVALIDATE, CLOSE
+        assertFalse(replay.getError().isPresent());
+        assertEquals(6, replay.getReplayedCount());
+        assertNotNull(seen[0]);
+        assertNotSame(original, seen[0]);
+        assertEquals(ItemTypes.STONE, seen[0].getRepresentative().getType());
+        assertTrue(replayed[0].isDisposed());
+        assertTrue(Menu.viewerMap.isEmpty());
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy.util;
+
+import com.github.xemiru.sponge.boxboy.Fakes;
+import org.junit.Test;
+import org.spongepowered.api.item.ItemType;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.item.inventory.ItemStack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class AnimationTimelineTest {
+
+    private static AnimationTimeline timeline(ItemType... types) {
+        AnimationTimeline.Builder builder = AnimationTimeline.builder();
+        for (ItemType type : types) builder.frame(Fakes.item(type), 1000);
+        return builder.build();
+    }
+
+    @Test
+    public void equalTimelinesAreInterned() {
+        AnimationTimeline first = timeline(ItemTypes.STONE, ItemTypes.DIRT);
+
+        assertSame(first, timeline(ItemTypes.STONE, ItemTypes.DIRT));
+        assertNotSame(first, timeline(ItemTypes.DIRT, ItemTypes.STONE));
+        assertNotSame(first, AnimationTimeline.builder()
+            .frame(Fakes.item(ItemTypes.STONE), 1000)
+            .frame(Fakes.item(ItemTypes.DIRT), 500)
+            .build());
+    }
+
+    @Test
+    public void framesAreLocatedByTime() {
+        AnimationTimeline timeline = AnimationTimeline.builder()
+            .frame(Fakes.item(ItemTypes.STONE), 100)
+            .frame(Fakes.item(ItemTypes.DIRT), 200)
+            .frame(Fakes.item(ItemTypes.COAL), 300)
+            .build();
+
+        assertEquals(3, timeline.size());
+        assertEquals(600, timeline.getLength());
+        assertEquals(200, timeline.getFrameTime(1));
+        assertEquals(0, timeline.indexAt(0));
+        assertEquals(0, timeline.indexAt(100));
+        assertEquals(1, timeline.indexAt(101));
+        assertEquals(2, timeline.indexAt(599));
+        assertEquals(0, timeline.indexAt(650)); // loops
+    }
+
+    @Test
+    public void animationsShareFrameStacks() {
+        AnimationTimeline timeline = timeline(ItemTypes.STONE, ItemTypes.DIRT);
+        Animation<ItemStack> first = timeline.animate();
+        Animation<ItemStack> second = timeline.animate(1500);
+
+        assertFalse(first.isEmpty());
+        assertSame(timeline.stackAt(0), first.getCurrentFrame());
+        assertSame(timeline.stackAt(1), second.getCurrentFrame());
+        assertSame(first.getCurrentFrame(), first.clone().getCurrentFrame());
+    }
+
+    @Test
+    public void addingFramesCopiesTheTimeline() {
+        AnimationTimeline timeline = timeline(ItemTypes.STONE, ItemTypes.DIRT);
+        Animation<ItemStack> shared = timeline.animate();
+        Animation<ItemStack> own = timeline.animate();
+
+        own.frame(Fakes.item(ItemTypes.COAL), 1000);
+
+        assertEquals(2, timeline.size());
+        assertSame(timeline.stackAt(0), shared.getCurrentFrame());
+        ItemStack frame = own.getCurrentFrame();
+        assertNotSame(timeline.stackAt(0), frame);
+        assertEquals(ItemTypes.STONE, frame.getType());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsEmptyTimeline() {
+        AnimationTimeline.builder().build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveFrameTime() {
+        AnimationTimeline.builder().frame(Fakes.item(ItemTypes.STONE), 0);
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Tellerva, Marc Lawrence
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.xemiru.sponge.boxboy.util;
+
+import com.github.xemiru.sponge.boxboy.Fakes;
+import org.junit.After;
+import org.junit.Test;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RepresentativeCacheTest {
+
+    @After
+    public void reset() {
+        RepresentativeCache.setMaximumSize(1);
+        RepresentativeCache.setMaximumSize(1024);
+    }
+
+    @Test
+    public void equalContentSharesAnInstance() {
+        ItemStack first = RepresentativeCache.intern(Fakes.item(ItemTypes.STONE));
+        ItemStack second = RepresentativeCache.intern(Fakes.item(ItemTypes.STONE));
+
+        assertSame(first, second);
+        assertTrue(RepresentativeCache.isInterned(first));
+        assertSame(first, RepresentativeCache.intern(first));
+    }
+
+    @Test
+    public void distinctContentIsKeptApart() {
+        ItemStack stone = RepresentativeCache.intern(Fakes.item(ItemTypes.STONE));
+        ItemStack dirt = RepresentativeCache.intern(Fakes.item(ItemTypes.DIRT));
+
+        assertNotSame(stone, dirt);
+        assertFalse(RepresentativeCache.isInterned(Fakes.item(ItemTypes.STONE)));
+    }
+
+    @Test
+    public void leastRecentlyInternedContentIsEvicted() {
+        RepresentativeCache.setMaximumSize(2);
+        ItemStack stone = RepresentativeCache.intern(Fakes.item(ItemTypes.STONE));
+        RepresentativeCache.intern(Fakes.item(ItemTypes.DIRT));
+        RepresentativeCache.intern(Fakes.item(ItemTypes.DIRT));
+        RepresentativeCache.intern(Fakes.item(ItemTypes.COAL));
+
+        assertEquals(2, RepresentativeCache.size());
+        assertFalse(RepresentativeCache.isInterned(stone));
+        assertNotSame(stone, RepresentativeCache.intern(Fakes.item(ItemTypes.STONE)));
+    }
+
+    @Test
+    public void snapshotsFollowTheirStack() {
+        ItemStackSnapshot snapshot = RepresentativeCache.snapshot(Fakes.item(ItemTypes.STONE));
+        assertSame(snapshot, RepresentativeCache.snapshot(RepresentativeCache.intern(Fakes.item(ItemTypes.STONE))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCache() {
+        RepresentativeCache.setMaximumSize(0);
+    }
+
+}